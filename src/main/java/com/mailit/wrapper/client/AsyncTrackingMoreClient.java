@@ -0,0 +1,57 @@
+package com.mailit.wrapper.client;
+
+import com.mailit.wrapper.model.trackingmore.TrackingMoreBatchData;
+import com.mailit.wrapper.model.trackingmore.TrackingMoreResponse;
+import com.mailit.wrapper.model.trackingmore.TrackingMoreShipment;
+import com.mailit.wrapper.model.trackingmore.TrackingMoreTrackingItem;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link TrackingMoreClient}.
+ *
+ * <p>Each call returns at once; the upstream work runs on a dedicated I/O
+ * pool with the caller's request context and correlation ID. Returned
+ * futures complete exceptionally with a {@link java.util.concurrent.TimeoutException}
+ * after the configured timeout, and cancelling a future (or its timing
+ * out) interrupts the upstream call's pending retries and permit wait.</p>
+ */
+public interface AsyncTrackingMoreClient {
+
+    /**
+     * Create multiple trackings in batch.
+     *
+     * @param shipments list of shipments to track (max 40)
+     * @return future of the response with created tracking IDs and any failures
+     */
+    CompletableFuture<TrackingMoreResponse<TrackingMoreBatchData>> createBatchTrackings(
+            List<TrackingMoreShipment> shipments);
+
+    /**
+     * Get tracking details by tracking number and courier.
+     *
+     * @param trackingNumber the tracking number
+     * @param courierCode the courier code
+     * @return future of the tracking details, completing with null if upstream has none
+     */
+    CompletableFuture<TrackingMoreTrackingItem> getTracking(String trackingNumber, String courierCode);
+
+    /**
+     * Get details for multiple trackings.
+     *
+     * @param trackingNumbers list of tracking numbers
+     * @return future of the tracking details
+     * @see TrackingMoreClient#getBatchTrackings
+     */
+    CompletableFuture<List<TrackingMoreTrackingItem>> getBatchTrackings(List<String> trackingNumbers);
+
+    /**
+     * Delete a tracking.
+     *
+     * @param trackingNumber the tracking number
+     * @param courierCode the courier code
+     * @return future completing with true if deleted successfully
+     */
+    CompletableFuture<Boolean> deleteTracking(String trackingNumber, String courierCode);
+}
@@ -0,0 +1,123 @@
+package com.mailit.wrapper.client;
+
+import com.mailit.wrapper.exception.TrackingMoreUnavailableException;
+import com.mailit.wrapper.model.trackingmore.TrackingMoreBatchData;
+import com.mailit.wrapper.model.trackingmore.TrackingMoreResponse;
+import com.mailit.wrapper.model.trackingmore.TrackingMoreShipment;
+import com.mailit.wrapper.model.trackingmore.TrackingMoreTrackingItem;
+import com.mailit.wrapper.util.RequestContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * {@link AsyncTrackingMoreClient} that runs {@link TrackingMoreClient} calls
+ * on a bounded I/O pool.
+ *
+ * <p>Calls keep the blocking client's retries, circuit breakers, hedging
+ * and governor. A worker thread is held for the length of each upstream
+ * call; when every worker is busy and the queue is full, calls fail fast
+ * with {@link TrackingMoreUnavailableException} instead of blocking the
+ * caller.</p>
+ *
+ * <p>Metrics: {@code executor.*{name=trackingmore.io}}.</p>
+ */
+@Slf4j
+@Component
+public class AsyncTrackingMoreClientImpl implements AsyncTrackingMoreClient {
+
+    private final TrackingMoreClient trackingMoreClient;
+    private final ThreadPoolExecutor ioExecutor;
+    private final long timeoutMillis;
+
+    public AsyncTrackingMoreClientImpl(
+            TrackingMoreClient trackingMoreClient,
+            MeterRegistry meterRegistry,
+            @Value("${trackingmore.async.threads:16}") int threads,
+            @Value("${trackingmore.async.queue-capacity:256}") int queueCapacity,
+            @Value("${trackingmore.async.timeout-ms:60000}") long timeoutMillis) {
+        this.trackingMoreClient = trackingMoreClient;
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.ioExecutor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "trackingmore-io-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        new ExecutorServiceMetrics(ioExecutor, "trackingmore.io", List.of()).bindTo(meterRegistry);
+
+        log.info("TrackingMore async client: threads={}, queue={}, timeout={}ms",
+                threads, queueCapacity, timeoutMillis);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ioExecutor.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<TrackingMoreResponse<TrackingMoreBatchData>> createBatchTrackings(
+            List<TrackingMoreShipment> shipments) {
+        return supplyAsync(() -> trackingMoreClient.createBatchTrackings(shipments));
+    }
+
+    @Override
+    public CompletableFuture<TrackingMoreTrackingItem> getTracking(String trackingNumber, String courierCode) {
+        return supplyAsync(() -> trackingMoreClient.getTracking(trackingNumber, courierCode));
+    }
+
+    @Override
+    public CompletableFuture<List<TrackingMoreTrackingItem>> getBatchTrackings(List<String> trackingNumbers) {
+        return supplyAsync(() -> trackingMoreClient.getBatchTrackings(trackingNumbers));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteTracking(String trackingNumber, String courierCode) {
+        return supplyAsync(() -> trackingMoreClient.deleteTracking(trackingNumber, courierCode));
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = ioExecutor.submit(RequestContext.propagate(() -> {
+                try {
+                    result.complete(call.get());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new TrackingMoreUnavailableException(
+                    "Too many pending TrackingMore calls", e));
+            return result;
+        }
+
+        // A cancelled or timed-out future interrupts its worker, which stops
+        // waiting for a governor permit or a scheduled retry
+        result.whenComplete((value, error) -> {
+            if (error != null && !task.isDone()) {
+                task.cancel(true);
+            }
+        });
+        return result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
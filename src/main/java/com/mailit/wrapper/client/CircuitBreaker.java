@@ -0,0 +1,227 @@
+package com.mailit.wrapper.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker for one TrackingMore endpoint.
+ *
+ * <p>Outcomes of the last {@code windowSize} calls are kept in a ring
+ * buffer. Once at least {@code minimumCalls} are recorded, the breaker opens
+ * when the failure rate or the slow-call rate reaches its threshold. After
+ * {@code openDuration} it lets exactly {@code halfOpenProbes} calls through;
+ * it closes if they stay under the thresholds and reopens otherwise. Every
+ * other caller is rejected while probes are in flight, so upstream is not
+ * flooded the moment it recovers.</p>
+ *
+ * <p>Every permitted call must be finished with {@link #onSuccess},
+ * {@link #onFailure} or {@link #onIgnored}.</p>
+ *
+ * <p>Metrics: {@code upstream.circuit.state{endpoint}} (0 closed, 1 open,
+ * 2 half-open), {@code upstream.circuit.transitions{endpoint,from,to}},
+ * {@code upstream.circuit.rejected{endpoint}}.</p>
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+    private static final byte SLOW_FAILURE = FAILURE | SLOW;
+
+    private final String endpoint;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    // Ring buffer of recent outcomes; guarded by this
+    private final byte[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openUntilNanos;
+    private int probesStarted;
+    private int probesFinished;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter rejected;
+
+    public CircuitBreaker(String endpoint, int windowSize, int minimumCalls, double failureRateThreshold,
+            double slowCallRateThreshold, Duration slowCallDuration, Duration openDuration, int halfOpenProbes,
+            MeterRegistry meterRegistry) {
+        this.endpoint = endpoint;
+        this.outcomes = new byte[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.meterRegistry = meterRegistry;
+
+        this.rejected = meterRegistry.counter("upstream.circuit.rejected", "endpoint", endpoint);
+        Gauge.builder("upstream.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .tag("endpoint", endpoint)
+                .description("0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ask to make a call.
+     *
+     * @return true if the call may proceed
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN && System.nanoTime() - openUntilNanos >= 0) {
+            transitionTo(State.HALF_OPEN);
+        }
+
+        boolean permitted = switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (probesStarted < halfOpenProbes) {
+                    probesStarted++;
+                    yield true;
+                }
+                yield false;
+            }
+        };
+
+        if (!permitted) {
+            rejected.increment();
+        }
+        return permitted;
+    }
+
+    /**
+     * Record a call that got a usable answer, including 4xx responses.
+     */
+    public void onSuccess(long durationNanos) {
+        record(durationNanos >= slowCallNanos ? SLOW : SUCCESS);
+    }
+
+    /**
+     * Record a call that failed with a 5xx or connection error.
+     */
+    public void onFailure(long durationNanos) {
+        record(durationNanos >= slowCallNanos ? SLOW_FAILURE : FAILURE);
+    }
+
+    /**
+     * Give back a permission without recording an outcome, e.g. when the
+     * call was never sent.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesStarted > probesFinished) {
+            probesStarted--;
+        }
+    }
+
+    /**
+     * Time until an open breaker lets probes through.
+     *
+     * @return remaining open time, zero unless open
+     */
+    public synchronized Duration remainingOpenTime() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, openUntilNanos - System.nanoTime()));
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private synchronized void record(byte outcome) {
+        if (state == State.OPEN || (state == State.HALF_OPEN && probesFinished >= probesStarted)) {
+            // A call that started before the last transition
+            return;
+        }
+
+        add(outcome);
+
+        if (state == State.HALF_OPEN) {
+            probesFinished++;
+            if (probesFinished >= halfOpenProbes) {
+                transitionTo(exceedsThresholds(probesFinished) ? State.OPEN : State.CLOSED);
+            }
+        } else if (recorded >= minimumCalls && exceedsThresholds(recorded)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private boolean exceedsThresholds(int calls) {
+        return failures * 100.0 / calls >= failureRateThreshold
+                || slowCalls * 100.0 / calls >= slowCallRateThreshold;
+    }
+
+    private void add(byte outcome) {
+        if (recorded == outcomes.length) {
+            byte evicted = outcomes[next];
+            if ((evicted & FAILURE) != 0) {
+                failures--;
+            }
+            if ((evicted & SLOW) != 0) {
+                slowCalls--;
+            }
+        } else {
+            recorded++;
+        }
+
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        if ((outcome & FAILURE) != 0) {
+            failures++;
+        }
+        if ((outcome & SLOW) != 0) {
+            slowCalls++;
+        }
+    }
+
+    private void transitionTo(State target) {
+        State previous = state;
+        if (target == State.OPEN) {
+            if (recorded > 0) {
+                log.error("Circuit breaker for {} opened: failureRate={}%, slowCallRate={}% over {} calls",
+                        endpoint, failures * 100 / recorded, slowCalls * 100 / recorded, recorded);
+            }
+            openUntilNanos = System.nanoTime() + openNanos;
+        } else if (target == State.HALF_OPEN) {
+            log.info("Circuit breaker for {} half-open: allowing {} probe calls", endpoint, halfOpenProbes);
+        } else {
+            log.info("Circuit breaker for {} closed", endpoint);
+        }
+
+        // Each state judges only its own calls
+        state = target;
+        resetWindow();
+        probesStarted = 0;
+        probesFinished = 0;
+
+        meterRegistry.counter("upstream.circuit.transitions",
+                "endpoint", endpoint, "from", previous.name(), "to", target.name()).increment();
+    }
+
+    private void resetWindow() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -0,0 +1,136 @@
+package com.mailit.wrapper.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Hedging state for one idempotent TrackingMore read endpoint.
+ *
+ * <p>Keeps the latencies of the last {@code windowSize} primary calls and
+ * hedges a call that is still running after the {@code percentile}-th of
+ * them (never less than {@code minDelay}; {@code initialDelay} until
+ * {@code minSamples} are recorded). The threshold is recomputed every
+ * tenth of a window rather than on every call.</p>
+ *
+ * <p>Hedges are paid for from a budget: every primary call deposits
+ * {@code budgetPercent / 100} of a hedge, up to {@code maxBurst}, and every
+ * hedge takes one. Extra upstream load therefore stays within
+ * {@code budgetPercent} of reads even when upstream is slow across the
+ * board.</p>
+ *
+ * <p>Metrics: {@code upstream.hedge.sent{endpoint}},
+ * {@code upstream.hedge.wins{endpoint,leg}} (primary or hedge),
+ * {@code upstream.hedge.budget_exhausted{endpoint}},
+ * {@code upstream.hedge.delay{endpoint}} (current threshold in ms).</p>
+ */
+public class Hedger {
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long initialDelayNanos;
+    private final int minSamples;
+    private final int recomputeEvery;
+    private final double depositPerCall;
+    private final double maxBurst;
+
+    // Ring buffer of recent primary latencies; guarded by this
+    private final long[] latencies;
+    private int next;
+    private int recorded;
+    private int sinceRecompute;
+    private double credits;
+
+    private volatile long delayNanos;
+
+    private final Counter sent;
+    private final Counter primaryWins;
+    private final Counter hedgeWins;
+    private final Counter budgetExhausted;
+
+    public Hedger(String endpoint, double percentile, Duration minDelay, Duration initialDelay, int windowSize,
+            int minSamples, double budgetPercent, int maxBurst, MeterRegistry meterRegistry) {
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.initialDelayNanos = Math.max(minDelayNanos, initialDelay.toNanos());
+        this.latencies = new long[windowSize];
+        this.minSamples = Math.max(1, Math.min(minSamples, windowSize));
+        this.recomputeEvery = Math.max(1, windowSize / 10);
+        this.depositPerCall = budgetPercent / 100.0;
+        this.maxBurst = Math.max(1, maxBurst);
+        this.delayNanos = initialDelayNanos;
+
+        this.sent = meterRegistry.counter("upstream.hedge.sent", "endpoint", endpoint);
+        this.primaryWins = meterRegistry.counter("upstream.hedge.wins", "endpoint", endpoint, "leg", "primary");
+        this.hedgeWins = meterRegistry.counter("upstream.hedge.wins", "endpoint", endpoint, "leg", "hedge");
+        this.budgetExhausted = meterRegistry.counter("upstream.hedge.budget_exhausted", "endpoint", endpoint);
+        Gauge.builder("upstream.hedge.delay", this, hedger -> hedger.delayNanos / 1_000_000.0)
+                .tag("endpoint", endpoint)
+                .baseUnit("milliseconds")
+                .description("How long a read may run before it is hedged")
+                .register(meterRegistry);
+    }
+
+    /**
+     * How long to wait for the primary call before hedging it.
+     *
+     * @return delay in nanoseconds
+     */
+    public long delayNanos() {
+        return delayNanos;
+    }
+
+    /**
+     * Record that a primary call was started, paying into the budget.
+     */
+    public synchronized void onPrimary() {
+        credits = Math.min(maxBurst, credits + depositPerCall);
+    }
+
+    /**
+     * Ask to send a hedge.
+     *
+     * @return true if the budget allows one more hedge
+     */
+    public boolean tryAcquireHedge() {
+        synchronized (this) {
+            if (credits >= 1) {
+                credits -= 1;
+                sent.increment();
+                return true;
+            }
+        }
+        budgetExhausted.increment();
+        return false;
+    }
+
+    /**
+     * Record which leg of a hedged call answered first.
+     */
+    public void onWin(boolean hedge) {
+        (hedge ? hedgeWins : primaryWins).increment();
+    }
+
+    /**
+     * Record how long a successful primary call took, whether or not its
+     * hedge won.
+     */
+    public synchronized void recordLatency(long nanos) {
+        latencies[next] = nanos;
+        next = (next + 1) % latencies.length;
+        if (recorded < latencies.length) {
+            recorded++;
+        }
+
+        if (recorded >= minSamples && ++sinceRecompute >= recomputeEvery) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(latencies, recorded);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * recorded) - 1;
+            delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, Math.min(index, recorded - 1))]);
+        }
+    }
+}
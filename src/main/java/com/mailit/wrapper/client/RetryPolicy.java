@@ -0,0 +1,64 @@
+package com.mailit.wrapper.client;
+
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry settings for one TrackingMore endpoint.
+ *
+ * <p>Backoff uses full jitter: the delay before retry {@code n} is drawn
+ * uniformly from {@code [0, min(maxBackoff, initialBackoff * 2^(n-1))]}, so
+ * clients that failed together do not retry together.</p>
+ *
+ * <p>Read from {@code trackingmore.retry.endpoints.<endpoint>.*}, falling
+ * back to {@code trackingmore.retry.default.*}.</p>
+ *
+ * @param maxAttempts total attempts including the first, at least 1
+ * @param initialBackoffMillis backoff ceiling before the first retry
+ * @param maxBackoffMillis upper bound on the backoff ceiling
+ */
+public record RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+
+    private static final String PREFIX = "trackingmore.retry.";
+
+    public RetryPolicy {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+    }
+
+    /**
+     * Resolve the policy for an endpoint from configuration.
+     *
+     * @param environment the Spring environment
+     * @param endpoint the endpoint name, e.g. {@code get}
+     * @return the endpoint's policy
+     */
+    public static RetryPolicy forEndpoint(Environment environment, String endpoint) {
+        return new RetryPolicy(
+                property(environment, endpoint, "max-attempts", Integer.class, 3),
+                property(environment, endpoint, "initial-backoff-ms", Long.class, 1000L),
+                property(environment, endpoint, "max-backoff-ms", Long.class, 8000L));
+    }
+
+    /**
+     * Pick the delay before the given retry.
+     *
+     * @param attempt the attempt that just failed, starting at 1
+     * @return delay in milliseconds
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = initialBackoffMillis << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static <T> T property(Environment environment, String endpoint, String key, Class<T> type,
+            T defaultValue) {
+        T fallback = environment.getProperty(PREFIX + "default." + key, type, defaultValue);
+        return environment.getProperty(PREFIX + "endpoints." + endpoint + "." + key, type, fallback);
+    }
+}
@@ -0,0 +1,255 @@
+package com.mailit.wrapper.client;
+
+import com.mailit.wrapper.exception.TrackingMoreUnavailableException;
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.trackingmore.TrackingMoreTrackingItem;
+import com.mailit.wrapper.util.RequestContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merges single-tracking lookups from concurrent requests into batch calls.
+ *
+ * <p>TrackingMore's {@code /trackings/get} accepts up to 40 numbers per call.
+ * A dispatcher thread takes the first waiting lookup, collects more for up
+ * to {@code window-ms} or until {@code max-size} are queued, and sends them
+ * as one {@link TrackingMoreClient#getBatchTrackings} call on a small sender
+ * pool. Each caller gets back the item for its own number (or null if
+ * upstream did not return it), or the batch's exception.</p>
+ *
+ * <p>The sender runs the call as the lookups' client when they all belong
+ * to one client, so the {@link UpstreamGovernor} weighs it by that plan;
+ * mixed batches are scheduled at system weight. The call gets the latest
+ * of the lookups' deadlines, while each caller stops waiting at its own.</p>
+ */
+@Slf4j
+@Component
+public class TrackingMoreBatcher {
+
+    private final TrackingMoreClient trackingMoreClient;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxSize;
+
+    private final BlockingQueue<Lookup> pending = new LinkedBlockingQueue<>();
+    private final ThreadPoolExecutor senders;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSize;
+    private final Counter savedCalls;
+
+    public TrackingMoreBatcher(
+            TrackingMoreClient trackingMoreClient,
+            MeterRegistry meterRegistry,
+            @Value("${trackingmore.batching.enabled:true}") boolean enabled,
+            @Value("${trackingmore.batching.window-ms:5}") long windowMillis,
+            @Value("${trackingmore.batching.max-size:40}") int maxSize,
+            @Value("${trackingmore.batching.senders:4}") int senders) {
+        this.trackingMoreClient = trackingMoreClient;
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxSize = maxSize;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // When every sender is busy the dispatcher sends the batch itself,
+        // which stops it collecting more until upstream catches up
+        this.senders = new ThreadPoolExecutor(
+                senders, senders,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(senders),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "trackingmore-batch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.batchSize = DistributionSummary.builder("upstream.batch.size")
+                .description("Lookups merged into one upstream batch call")
+                .register(meterRegistry);
+        this.savedCalls = Counter.builder("upstream.batch.saved")
+                .description("Upstream calls saved by micro-batching")
+                .register(meterRegistry);
+        meterRegistry.gauge("upstream.batch.pending", pending, BlockingQueue::size);
+
+        this.dispatcher = new Thread(this::dispatch, "trackingmore-batcher");
+        this.dispatcher.setDaemon(true);
+        if (enabled) {
+            this.dispatcher.start();
+        }
+
+        log.info("TrackingMore micro-batching: enabled={}, window={}ms, maxSize={}, senders={}",
+                enabled, windowMillis, maxSize, senders);
+    }
+
+    /**
+     * Look up one tracking, possibly as part of a larger upstream call.
+     *
+     * @param trackingNumber the tracking number
+     * @param courierCode the courier code
+     * @return the upstream item, or null if upstream has none
+     */
+    public TrackingMoreTrackingItem getTracking(String trackingNumber, String courierCode) {
+        if (!enabled) {
+            return trackingMoreClient.getTracking(trackingNumber, courierCode);
+        }
+
+        Lookup lookup = new Lookup(trackingNumber, courierCode, RequestContext.client(), RequestContext.deadline(),
+                MDC.getCopyOfContextMap(), new CompletableFuture<>());
+        pending.add(lookup);
+        if (!running) {
+            lookup.result().completeExceptionally(
+                    new TrackingMoreUnavailableException("Tracking lookups are shutting down"));
+        }
+
+        return RequestContext.await(lookup.result());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        senders.shutdown();
+
+        TrackingMoreUnavailableException shuttingDown =
+                new TrackingMoreUnavailableException("Tracking lookups are shutting down");
+        Lookup lookup;
+        while ((lookup = pending.poll()) != null) {
+            lookup.result().completeExceptionally(shuttingDown);
+        }
+    }
+
+    private void dispatch() {
+        while (running) {
+            List<Lookup> batch = new ArrayList<>(maxSize);
+            try {
+                batch.add(pending.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Lookup next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                batch.forEach(lookup -> lookup.result().completeExceptionally(
+                        new TrackingMoreUnavailableException("Tracking lookups are shutting down")));
+                return;
+            }
+
+            if (senders.isShutdown()) {
+                batch.forEach(lookup -> lookup.result().completeExceptionally(
+                        new TrackingMoreUnavailableException("Tracking lookups are shutting down")));
+                return;
+            }
+            senders.execute(() -> sendWithContext(batch));
+        }
+    }
+
+    private void sendWithContext(List<Lookup> batch) {
+        AuthenticatedClient client = batch.get(0).client();
+        boolean singleClient = batch.stream().allMatch(lookup -> Objects.equals(lookup.client(), client));
+        RequestContext.setClient(singleClient ? client : null);
+        RequestContext.setDeadline(latestDeadline(batch));
+        if (batch.size() == 1 && batch.get(0).mdc() != null) {
+            MDC.setContextMap(batch.get(0).mdc());
+        }
+        try {
+            send(batch);
+        } finally {
+            RequestContext.clear();
+            MDC.clear();
+        }
+    }
+
+    private void send(List<Lookup> batch) {
+        batchSize.record(batch.size());
+        if (batch.size() == 1) {
+            Lookup lookup = batch.get(0);
+            try {
+                lookup.result().complete(trackingMoreClient.getTracking(lookup.trackingNumber(), lookup.courierCode()));
+            } catch (RuntimeException e) {
+                lookup.result().completeExceptionally(e);
+            }
+            return;
+        }
+
+        List<String> numbers = batch.stream().map(Lookup::trackingNumber).distinct().toList();
+        savedCalls.increment(batch.size() - 1);
+        log.debug("Sending {} tracking lookups as one batch call", batch.size());
+
+        List<TrackingMoreTrackingItem> items;
+        try {
+            items = trackingMoreClient.getBatchTrackings(numbers);
+        } catch (RuntimeException e) {
+            batch.forEach(lookup -> lookup.result().completeExceptionally(e));
+            return;
+        }
+
+        for (Lookup lookup : batch) {
+            lookup.result().complete(match(items, lookup));
+        }
+    }
+
+    /**
+     * The batch is useful until its last caller gives up; null if any
+     * caller has no deadline.
+     */
+    private static Long latestDeadline(List<Lookup> batch) {
+        Long latest = null;
+        for (Lookup lookup : batch) {
+            if (lookup.deadline() == null) {
+                return null;
+            }
+            if (latest == null || lookup.deadline() - latest > 0) {
+                latest = lookup.deadline();
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Pick the item for a lookup. When the lookup names a courier, only an
+     * item for that courier (or one upstream left without a courier) is
+     * used: the same number under another courier is a different shipment.
+     */
+    private static TrackingMoreTrackingItem match(List<TrackingMoreTrackingItem> items, Lookup lookup) {
+        TrackingMoreTrackingItem courierUnknown = null;
+        for (TrackingMoreTrackingItem item : items) {
+            if (!lookup.trackingNumber().equals(item.getTrackingNumber())) {
+                continue;
+            }
+            if (lookup.courierCode() == null || lookup.courierCode().equals(item.getCourierCode())) {
+                return item;
+            }
+            if (item.getCourierCode() == null && courierUnknown == null) {
+                courierUnknown = item;
+            }
+        }
+        return courierUnknown;
+    }
+
+    private record Lookup(String trackingNumber, String courierCode, AuthenticatedClient client, Long deadline,
+            Map<String, String> mdc, CompletableFuture<TrackingMoreTrackingItem> result) {}
+}
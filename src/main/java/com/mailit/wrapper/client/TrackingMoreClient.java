@@ -1,5 +1,6 @@
 package com.mailit.wrapper.client;
 
+import com.mailit.wrapper.model.trackingmore.TrackingMoreBatchData;
 import com.mailit.wrapper.model.trackingmore.TrackingMoreResponse;
 import com.mailit.wrapper.model.trackingmore.TrackingMoreShipment;
 import com.mailit.wrapper.model.trackingmore.TrackingMoreTrackingItem;
@@ -20,7 +21,7 @@ public interface TrackingMoreClient {
      * @param shipments list of shipments to track (max 40)
      * @return response with created tracking IDs and any failures
      */
-    TrackingMoreResponse createBatchTrackings(List<TrackingMoreShipment> shipments);
+    TrackingMoreResponse<TrackingMoreBatchData> createBatchTrackings(List<TrackingMoreShipment> shipments);
 
     /**
      * Get tracking details by tracking number and courier.
@@ -34,6 +35,10 @@ public interface TrackingMoreClient {
     /**
      * Get details for multiple trackings.
      * 
+     * <p>Long lists may be fetched in several upstream calls. Items from a
+     * call that failed are missing from the result rather than failing the
+     * whole lookup.</p>
+     * 
      * @param trackingNumbers list of tracking numbers
      * @return list of tracking details
      */
@@ -1,59 +1,258 @@
 package com.mailit.wrapper.client;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mailit.wrapper.exception.DeadlineExceededException;
 import com.mailit.wrapper.exception.TrackingMoreException;
 import com.mailit.wrapper.exception.TrackingMoreUnavailableException;
 import com.mailit.wrapper.model.trackingmore.*;
-import lombok.RequiredArgsConstructor;
+import com.mailit.wrapper.util.RequestContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of TrackingMore API client.
  * 
  * <p>Handles HTTP communication with retry logic and circuit breaker pattern.
- * Retry policy:
+ * Each attempt first takes a permit from the {@link UpstreamGovernor} and
+ * then a slot from the {@link UpstreamConcurrencyLimiter}.
+ * Retry policy (per endpoint, see {@link RetryPolicy}):
  * <ul>
  *   <li>Retry on: timeouts, 5xx errors</li>
- *   <li>Never retry on: 4xx errors (validation, auth) — avoids duplicate creates</li>
+ *   <li>Retry on 429 after its {@code Retry-After} window, if that is short enough</li>
+ *   <li>Never retry on: other 4xx errors (validation, auth) — avoids duplicate creates</li>
  * </ul>
+ * 
+ * <p>Retries are not slept on: a failed attempt schedules the next one on a
+ * small timer pool after a jittered backoff. The timer only waits out the
+ * delay; the attempt itself (governor wait and HTTP call) runs on a bounded
+ * retry I/O pool with the caller's request context, and fails fast with
+ * {@link TrackingMoreUnavailableException} when that pool is full.</p>
+ * 
+ * <p>Calls made for a request with a deadline (see {@link RequestContext#remaining})
+ * stop once it passes: no attempt starts after it, no retry is scheduled
+ * that could not run before it, and the caller stops waiting at it with
+ * {@link DeadlineExceededException}.</p>
+ * 
+ * <p>With hedging enabled, {@code /trackings/get} reads that have not
+ * answered within their endpoint's {@link Hedger} delay are sent a second
+ * time, and whichever answers first is used.</p>
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class TrackingMoreClientImpl implements TrackingMoreClient {
 
+    static final String ENDPOINT_CREATE = "create";
+    static final String ENDPOINT_GET = "get";
+    static final String ENDPOINT_BATCH_GET = "batch-get";
+    static final String ENDPOINT_DELETE = "delete";
+    static final String ENDPOINT_DETECT = "detect";
+
+    private static final String RATE_LIMIT_RESET_HEADER = "X-RateLimit-Reset";
+    // Reset values above this are epoch seconds, below it seconds from now
+    private static final long EPOCH_SECONDS_THRESHOLD = 1_000_000_000L;
+
+    // Response bodies are decoded straight into these types in one pass
+    private static final ParameterizedTypeReference<TrackingMoreResponse<TrackingMoreBatchData>>
+            BATCH_CREATE_RESPONSE = new ParameterizedTypeReference<>() {};
+    private static final ParameterizedTypeReference<TrackingMoreResponse<List<TrackingMoreTrackingItem>>>
+            TRACKING_LIST_RESPONSE = new ParameterizedTypeReference<>() {};
+    private static final ParameterizedTypeReference<TrackingMoreResponse<List<DetectedCourier>>>
+            DETECT_RESPONSE = new ParameterizedTypeReference<>() {};
+    private static final ParameterizedTypeReference<TrackingMoreResponse<Void>>
+            EMPTY_RESPONSE = new ParameterizedTypeReference<>() {};
+
     private final RestClient trackingMoreRestClient;
-    private final ObjectMapper objectMapper;
+    private final UpstreamGovernor upstreamGovernor;
+    private final UpstreamConcurrencyLimiter concurrencyLimiter;
+    private final Map<String, RetryPolicy> retryPolicies;
+    private final Map<String, CircuitBreaker> circuitBreakers;
+    private final ScheduledThreadPoolExecutor retryScheduler;
+    private final ThreadPoolExecutor retryExecutor;
+    private final ThreadPoolExecutor chunkExecutor;
+    private final int chunkSize;
+    private final int maxQueryChars;
+    private final Counter failedChunks;
+    private final Map<String, Hedger> hedgers;
+    private final ThreadPoolExecutor hedgeExecutor;
+    private final Duration defaultThrottlePause;
+    private final Duration maxThrottlePause;
+    private final long maxThrottleRetryWaitMillis;
+    private final MeterRegistry meterRegistry;
+
+    public TrackingMoreClientImpl(
+            RestClient trackingMoreRestClient,
+            UpstreamGovernor upstreamGovernor,
+            UpstreamConcurrencyLimiter concurrencyLimiter,
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${trackingmore.retry.threads:4}") int retryThreads,
+            @Value("${trackingmore.retry.io-threads:16}") int retryIoThreads,
+            @Value("${trackingmore.retry.queue-capacity:64}") int retryQueueCapacity,
+            @Value("${trackingmore.batch-get.chunk-size:40}") int chunkSize,
+            @Value("${trackingmore.batch-get.max-query-chars:1800}") int maxQueryChars,
+            @Value("${trackingmore.batch-get.parallelism:4}") int chunkParallelism,
+            @Value("${trackingmore.hedging.enabled:false}") boolean hedgingEnabled,
+            @Value("${trackingmore.hedging.threads:16}") int hedgeThreads,
+            @Value("${trackingmore.hedging.percentile:95}") double hedgePercentile,
+            @Value("${trackingmore.hedging.min-delay-ms:50}") long hedgeMinDelayMillis,
+            @Value("${trackingmore.hedging.initial-delay-ms:1000}") long hedgeInitialDelayMillis,
+            @Value("${trackingmore.hedging.window-size:200}") int hedgeWindowSize,
+            @Value("${trackingmore.hedging.min-samples:20}") int hedgeMinSamples,
+            @Value("${trackingmore.hedging.budget-percent:5}") double hedgeBudgetPercent,
+            @Value("${trackingmore.hedging.max-burst:10}") int hedgeMaxBurst,
+            @Value("${trackingmore.throttling.default-pause-ms:1000}") long defaultThrottlePauseMillis,
+            @Value("${trackingmore.throttling.max-pause-ms:60000}") long maxThrottlePauseMillis,
+            @Value("${trackingmore.throttling.max-retry-wait-ms:5000}") long maxThrottleRetryWaitMillis,
+            @Value("${trackingmore.circuit-breaker.window-size:20}") int breakerWindowSize,
+            @Value("${trackingmore.circuit-breaker.minimum-calls:10}") int breakerMinimumCalls,
+            @Value("${trackingmore.circuit-breaker.failure-rate-threshold:50}") double breakerFailureRate,
+            @Value("${trackingmore.circuit-breaker.slow-call-rate-threshold:80}") double breakerSlowCallRate,
+            @Value("${trackingmore.circuit-breaker.slow-call-ms:10000}") long breakerSlowCallMillis,
+            @Value("${trackingmore.circuit-breaker.open-seconds:30}") long breakerOpenSeconds,
+            @Value("${trackingmore.circuit-breaker.half-open-probes:3}") int breakerHalfOpenProbes) {
+        this.trackingMoreRestClient = trackingMoreRestClient;
+        this.upstreamGovernor = upstreamGovernor;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.defaultThrottlePause = Duration.ofMillis(defaultThrottlePauseMillis);
+        this.maxThrottlePause = Duration.ofMillis(maxThrottlePauseMillis);
+        this.maxThrottleRetryWaitMillis = maxThrottleRetryWaitMillis;
+        this.meterRegistry = meterRegistry;
+        this.retryPolicies = Map.of(
+                ENDPOINT_CREATE, RetryPolicy.forEndpoint(environment, ENDPOINT_CREATE),
+                ENDPOINT_GET, RetryPolicy.forEndpoint(environment, ENDPOINT_GET),
+                ENDPOINT_BATCH_GET, RetryPolicy.forEndpoint(environment, ENDPOINT_BATCH_GET),
+                ENDPOINT_DELETE, RetryPolicy.forEndpoint(environment, ENDPOINT_DELETE),
+                ENDPOINT_DETECT, RetryPolicy.forEndpoint(environment, ENDPOINT_DETECT));
+        this.circuitBreakers = retryPolicies.keySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Function.identity(), endpoint -> new CircuitBreaker(
+                        endpoint, breakerWindowSize, breakerMinimumCalls, breakerFailureRate, breakerSlowCallRate,
+                        Duration.ofMillis(breakerSlowCallMillis), Duration.ofSeconds(breakerOpenSeconds),
+                        breakerHalfOpenProbes, meterRegistry)));
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.retryScheduler = new ScheduledThreadPoolExecutor(retryThreads, runnable -> {
+            Thread thread = new Thread(runnable, "trackingmore-retry-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retryScheduler.setRemoveOnCancelPolicy(true);
+        AtomicInteger retryIoThreadCount = new AtomicInteger();
+        // No caller-runs here: that would put blocking attempts back on the timer threads
+        this.retryExecutor = new ThreadPoolExecutor(
+                retryIoThreads, retryIoThreads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(retryQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "trackingmore-retry-io-" + retryIoThreadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        new ExecutorServiceMetrics(retryExecutor, "trackingmore.retry", List.of()).bindTo(meterRegistry);
+
+        this.chunkSize = chunkSize;
+        this.maxQueryChars = maxQueryChars;
+        AtomicInteger chunkThreadCount = new AtomicInteger();
+        // Beyond the pool and its queue, the requesting thread fetches the chunk itself
+        this.chunkExecutor = new ThreadPoolExecutor(
+                chunkParallelism, chunkParallelism,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(chunkParallelism * 4),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "trackingmore-chunk-" + chunkThreadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.failedChunks = meterRegistry.counter("upstream.batch_get.chunks.failed");
+
+        if (hedgingEnabled) {
+            this.hedgers = Stream.of(ENDPOINT_GET, ENDPOINT_BATCH_GET)
+                    .collect(Collectors.toUnmodifiableMap(Function.identity(), endpoint -> new Hedger(
+                            endpoint, hedgePercentile, Duration.ofMillis(hedgeMinDelayMillis),
+                            Duration.ofMillis(hedgeInitialDelayMillis), hedgeWindowSize, hedgeMinSamples,
+                            hedgeBudgetPercent, hedgeMaxBurst, meterRegistry)));
+            AtomicInteger hedgeThreadCount = new AtomicInteger();
+            // No caller-runs here: when the pool is full, reads go out unhedged
+            this.hedgeExecutor = new ThreadPoolExecutor(
+                    hedgeThreads, hedgeThreads,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(hedgeThreads),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "trackingmore-hedge-" + hedgeThreadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            log.info("TrackingMore hedging: p{} delay (min {}ms), budget {}% of reads",
+                    hedgePercentile, hedgeMinDelayMillis, hedgeBudgetPercent);
+        } else {
+            this.hedgers = Map.of();
+            this.hedgeExecutor = null;
+        }
 
-    // Circuit breaker state
-    private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
-    private volatile long circuitOpenUntil = 0;
-    private static final int FAILURE_THRESHOLD = 5;
-    private static final long CIRCUIT_OPEN_DURATION_MS = 30_000; // 30 seconds
+        log.info("TrackingMore retry policies: {}", retryPolicies);
+    }
 
-    private static final int MAX_RETRIES = 3;
-    private static final long INITIAL_BACKOFF_MS = 1000;
+    @PreDestroy
+    void shutdown() {
+        retryScheduler.shutdownNow();
+        retryExecutor.shutdownNow();
+        chunkExecutor.shutdownNow();
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
 
     @Override
-    public TrackingMoreResponse createBatchTrackings(List<TrackingMoreShipment> shipments) {
+    public TrackingMoreResponse<TrackingMoreBatchData> createBatchTrackings(List<TrackingMoreShipment> shipments) {
         log.debug("Creating batch trackings: count={}", shipments.size());
         
         // TrackingMore API expects a direct array, not wrapped in an object
-        return executeWithRetry(() -> 
+        return executeWithRetry(ENDPOINT_CREATE, () ->
             trackingMoreRestClient.post()
                 .uri("/trackings/batch")
                 .body(shipments)  // Send array directly
                 .retrieve()
-                .body(TrackingMoreResponse.class)
+                .body(BATCH_CREATE_RESPONSE)
         );
     }
 
@@ -61,45 +260,118 @@ public class TrackingMoreClientImpl implements TrackingMoreClient {
     public TrackingMoreTrackingItem getTracking(String trackingNumber, String courierCode) {
         log.debug("Getting tracking: number={}, courier={}", trackingNumber, courierCode);
         
-        TrackingMoreResponse response = executeWithRetry(() ->
+        TrackingMoreResponse<List<TrackingMoreTrackingItem>> response = executeHedged(ENDPOINT_GET, () ->
             trackingMoreRestClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/trackings/get")
                         .queryParam("tracking_numbers", trackingNumber)
                         .build())
                 .retrieve()
-                .body(TrackingMoreResponse.class)
+                .body(TRACKING_LIST_RESPONSE)
         );
 
-        if (response == null || response.getData() == null) {
+        // TrackingMore GET returns an array of items
+        if (response == null || response.getData() == null || response.getData().isEmpty()) {
             return null;
         }
 
-        // Parse the data field - TrackingMore GET returns an array of items
-        return parseTrackingItem(response.getData());
+        return response.getData().get(0);
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>Numbers are split into chunks of at most {@code chunk-size} numbers
+     * and {@code max-query-chars} characters. Chunks are fetched in parallel
+     * and merged. A failed chunk only drops its own items; the call throws
+     * only if every chunk fails.</p>
+     */
     @Override
     public List<TrackingMoreTrackingItem> getBatchTrackings(List<String> trackingNumbers) {
         log.debug("Getting batch trackings: count={}", trackingNumbers.size());
         
+        List<List<String>> chunks = chunk(trackingNumbers);
+        if (chunks.size() <= 1) {
+            return chunks.isEmpty() ? List.of() : fetchChunk(chunks.get(0));
+        }
+
+        List<CompletableFuture<List<TrackingMoreTrackingItem>>> futures = new ArrayList<>(chunks.size());
+        for (List<String> chunk : chunks) {
+            CompletableFuture<List<TrackingMoreTrackingItem>> future = new CompletableFuture<>();
+            chunkExecutor.execute(RequestContext.propagate(() -> {
+                try {
+                    future.complete(fetchChunk(chunk));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }));
+            futures.add(future);
+        }
+
+        List<TrackingMoreTrackingItem> items = new ArrayList<>();
+        RuntimeException firstFailure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                items.addAll(await(futures.get(i)));
+            } catch (RuntimeException e) {
+                failedChunks.increment();
+                log.warn("Batch tracking chunk {}/{} ({} numbers) failed: {}",
+                        i + 1, chunks.size(), chunks.get(i).size(), e.getMessage());
+                if (firstFailure == null) {
+                    firstFailure = e;
+                }
+            }
+        }
+
+        if (firstFailure != null && items.isEmpty()) {
+            throw firstFailure;
+        }
+        return items;
+    }
+
+    private List<TrackingMoreTrackingItem> fetchChunk(List<String> trackingNumbers) {
         String numbers = String.join(",", trackingNumbers);
         
-        TrackingMoreResponse response = executeWithRetry(() ->
+        TrackingMoreResponse<List<TrackingMoreTrackingItem>> response = executeHedged(ENDPOINT_BATCH_GET, () ->
             trackingMoreRestClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/trackings/get")
                         .queryParam("tracking_numbers", numbers)
                         .build())
                 .retrieve()
-                .body(TrackingMoreResponse.class)
+                .body(TRACKING_LIST_RESPONSE)
         );
 
         if (response == null || response.getData() == null) {
             return List.of();
         }
 
-        return parseTrackingItems(response.getData());
+        return response.getData();
+    }
+
+    /**
+     * Split numbers into upstream-sized groups, bounded by count and by the
+     * length of the joined {@code tracking_numbers} value.
+     */
+    private List<List<String>> chunk(List<String> trackingNumbers) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int chars = 0;
+        for (String number : trackingNumbers) {
+            int added = number.length() + (current.isEmpty() ? 0 : 1);
+            if (!current.isEmpty() && (current.size() >= chunkSize || chars + added > maxQueryChars)) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                added = number.length();
+                chars = 0;
+            }
+            current.add(number);
+            chars += added;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
     }
 
     @Override
@@ -107,11 +379,11 @@ public class TrackingMoreClientImpl implements TrackingMoreClient {
         log.debug("Deleting tracking: number={}, courier={}", trackingNumber, courierCode);
         
         try {
-            TrackingMoreResponse response = executeWithRetry(() ->
+            TrackingMoreResponse<Void> response = executeWithRetry(ENDPOINT_DELETE, () ->
                 trackingMoreRestClient.delete()
                     .uri("/trackings/{courier}/{tracking}", courierCode, trackingNumber)
                     .retrieve()
-                    .body(TrackingMoreResponse.class)
+                    .body(EMPTY_RESPONSE)
             );
             
             return response != null && response.isSuccess();
@@ -129,20 +401,22 @@ public class TrackingMoreClientImpl implements TrackingMoreClient {
     public List<String> detectCourier(String trackingNumber) {
         log.debug("Detecting courier for tracking: {}", trackingNumber);
         
-        TrackingMoreResponse response = executeWithRetry(() ->
+        TrackingMoreResponse<List<DetectedCourier>> response = executeWithRetry(ENDPOINT_DETECT, () ->
             trackingMoreRestClient.post()
                 .uri("/couriers/detect")
                 .body(new DetectRequest(trackingNumber))
                 .retrieve()
-                .body(TrackingMoreResponse.class)
+                .body(DETECT_RESPONSE)
         );
 
         if (response == null || response.getData() == null) {
             return List.of();
         }
 
-        // Parse courier codes from response
-        return parseCourierCodes(response.getData());
+        return response.getData().stream()
+                .map(DetectedCourier::courierCode)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     /**
@@ -153,88 +427,351 @@ public class TrackingMoreClientImpl implements TrackingMoreClient {
      *   <li>Retry on: timeouts (ResourceAccessException), 5xx errors</li>
      *   <li>Never retry on: 4xx errors — avoids duplicate creates</li>
      * </ul>
+     * 
+     * <p>The first attempt runs on the calling thread; retries are delayed
+     * by {@link #retryScheduler} and run on {@link #retryExecutor}. Every
+     * attempt, retries included, must be
+     * admitted by the endpoint's {@link CircuitBreaker}.</p>
      */
-    private <T> T executeWithRetry(java.util.function.Supplier<T> operation) {
-        // Check circuit breaker
-        if (isCircuitOpen()) {
-            throw new TrackingMoreUnavailableException(
-                    "Circuit breaker is open. Service temporarily unavailable.",
-                    (circuitOpenUntil - System.currentTimeMillis()) / 1000
-            );
+    private <T> T executeWithRetry(String endpoint, Supplier<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(endpoint, retryPolicies.get(endpoint), operation, 1, result);
+        return await(result);
+    }
+
+    /**
+     * Execute an idempotent read, hedging it if it runs long.
+     * 
+     * <p>The primary call runs on {@link #hedgeExecutor} while the caller
+     * waits up to the endpoint's hedge delay. If it has not answered by then
+     * and the budget allows, an identical call is sent and the first
+     * successful answer wins; the call fails only if both legs fail. The
+     * losing leg is left to finish in the background. Each leg has its own
+     * retries and passes the circuit breaker and governor like any call.</p>
+     */
+    private <T> T executeHedged(String endpoint, Supplier<T> operation) {
+        Hedger hedger = hedgers.get(endpoint);
+        if (hedger == null) {
+            return executeWithRetry(endpoint, operation);
         }
 
-        Exception lastException = null;
-        
-        for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
-            try {
-                T result = operation.get();
-                onSuccess();
-                return result;
-                
-            } catch (HttpClientErrorException e) {
-                // 4xx errors - DON'T RETRY (validation, auth errors)
-                log.warn("TrackingMore client error (4xx): status={}, body={}", 
-                        e.getStatusCode(), e.getResponseBodyAsString());
-                onSuccess(); // Don't count 4xx as circuit breaker failure
-                throw mapClientError(e);
-                
-            } catch (HttpServerErrorException e) {
-                // 5xx errors - RETRY with backoff
-                log.warn("TrackingMore server error (5xx), attempt {}/{}: status={}", 
-                        attempt, MAX_RETRIES, e.getStatusCode());
-                lastException = e;
-                onFailure();
-                
-                if (attempt < MAX_RETRIES) {
-                    sleep(INITIAL_BACKOFF_MS * (long) Math.pow(2, attempt - 1));
+        long start = System.nanoTime();
+        CompletableFuture<T> primary = submitLeg(endpoint, operation);
+        if (primary == null) {
+            // Hedge pool saturated: fall back to a plain call
+            return executeWithRetry(endpoint, operation);
+        }
+        hedger.onPrimary();
+        primary.thenRun(() -> hedger.recordLatency(System.nanoTime() - start));
+
+        Duration remaining = RequestContext.remaining();
+        long waitNanos = remaining == null ? hedger.delayNanos() : Math.min(hedger.delayNanos(), remaining.toNanos());
+        try {
+            return primary.get(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Still running: consider hedging below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TrackingMoreUnavailableException("Request interrupted", e);
+        } catch (ExecutionException e) {
+            return await(primary);
+        }
+
+        remaining = RequestContext.remaining();
+        if ((remaining != null && remaining.toNanos() <= 0) || !hedger.tryAcquireHedge()) {
+            return await(primary);
+        }
+        CompletableFuture<T> hedge = submitLeg(endpoint, operation);
+        if (hedge == null) {
+            return await(primary);
+        }
+        log.debug("Hedging {} call after {}ms", endpoint, TimeUnit.NANOSECONDS.toMillis(hedger.delayNanos()));
+
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failedLegs = new AtomicInteger();
+        completeFirst(primary, winner, failedLegs, hedger, false);
+        completeFirst(hedge, winner, failedLegs, hedger, true);
+        return await(winner);
+    }
+
+    private <T> CompletableFuture<T> submitLeg(String endpoint, Supplier<T> operation) {
+        CompletableFuture<T> leg = new CompletableFuture<>();
+        try {
+            hedgeExecutor.execute(RequestContext.propagate(() -> {
+                try {
+                    leg.complete(executeWithRetry(endpoint, operation));
+                } catch (Throwable t) {
+                    leg.completeExceptionally(t);
                 }
-                
-            } catch (ResourceAccessException e) {
-                // Timeout/network errors - RETRY with backoff
-                log.warn("TrackingMore connection error, attempt {}/{}: {}", 
-                        attempt, MAX_RETRIES, e.getMessage());
-                lastException = e;
-                onFailure();
-                
-                if (attempt < MAX_RETRIES) {
-                    sleep(INITIAL_BACKOFF_MS * (long) Math.pow(2, attempt - 1));
+            }));
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        return leg;
+    }
+
+    private static <T> void completeFirst(CompletableFuture<T> leg, CompletableFuture<T> winner,
+            AtomicInteger failedLegs, Hedger hedger, boolean hedge) {
+        leg.whenComplete((value, error) -> {
+            if (error == null) {
+                if (winner.complete(value)) {
+                    hedger.onWin(hedge);
                 }
+            } else if (failedLegs.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
             }
+        });
+    }
+
+    private <T> void attempt(String endpoint, RetryPolicy policy, Supplier<T> operation, int attempt,
+            CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // Caller gave up (interrupted or deadline) while this retry was waiting
+            return;
         }
 
-        // All retries exhausted
-        throw new TrackingMoreUnavailableException(
-                "TrackingMore service unavailable after " + MAX_RETRIES + " attempts",
-                lastException
-        );
+        Duration remaining = RequestContext.remaining();
+        if (remaining != null && remaining.toNanos() <= 0) {
+            deadlineExceeded(endpoint);
+            result.completeExceptionally(new DeadlineExceededException(
+                    "Request deadline passed before TrackingMore " + endpoint + " attempt " + attempt));
+            return;
+        }
+
+        CircuitBreaker breaker = circuitBreakers.get(endpoint);
+        if (!breaker.tryAcquirePermission()) {
+            result.completeExceptionally(new TrackingMoreUnavailableException(
+                    "Circuit breaker is open. Service temporarily unavailable.",
+                    Math.max(1, breaker.remainingOpenTime().toSeconds())
+            ));
+            return;
+        }
+
+        try {
+            // Every attempt counts against the shared upstream quota and
+            // occupies one of upstream's adaptive concurrency slots
+            upstreamGovernor.acquire();
+            concurrencyLimiter.acquire();
+        } catch (RuntimeException e) {
+            // Shed before reaching upstream: says nothing about its health
+            breaker.onIgnored();
+            result.completeExceptionally(e);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            T value = operation.get();
+            long duration = System.nanoTime() - start;
+            concurrencyLimiter.release(endpoint, duration);
+            breaker.onSuccess(duration);
+            result.complete(value);
+            
+        } catch (HttpClientErrorException.TooManyRequests e) {
+            // 429 - upstream is healthy but throttling us: slow every call down
+            long duration = System.nanoTime() - start;
+            concurrencyLimiter.releaseFailed();
+            breaker.onSuccess(duration);
+            onThrottled(endpoint, policy, operation, attempt, result, e);
+            
+        } catch (HttpClientErrorException e) {
+            // 4xx errors - DON'T RETRY (validation, auth errors)
+            log.warn("TrackingMore client error (4xx): status={}, body={}", 
+                    e.getStatusCode(), e.getResponseBodyAsString());
+            long duration = System.nanoTime() - start;
+            concurrencyLimiter.releaseIgnored();
+            breaker.onSuccess(duration); // Don't count 4xx as circuit breaker failure
+            result.completeExceptionally(mapClientError(e));
+            
+        } catch (HttpServerErrorException e) {
+            // 5xx errors - RETRY with backoff
+            log.warn("TrackingMore server error (5xx) on {}, attempt {}/{}: status={}", 
+                    endpoint, attempt, policy.maxAttempts(), e.getStatusCode());
+            long duration = System.nanoTime() - start;
+            concurrencyLimiter.releaseFailed();
+            breaker.onFailure(duration);
+            retryOrFail(endpoint, policy, operation, attempt, result, e);
+            
+        } catch (ResourceAccessException e) {
+            Duration left = RequestContext.remaining();
+            if (left != null && left.toNanos() <= 0) {
+                // Cut short by our caller's deadline, which says nothing about upstream
+                concurrencyLimiter.releaseIgnored();
+                breaker.onIgnored();
+                deadlineExceeded(endpoint);
+                result.completeExceptionally(new DeadlineExceededException(
+                        "Request deadline passed during TrackingMore " + endpoint + " attempt " + attempt, e));
+                return;
+            }
+            // Timeout/network errors - RETRY with backoff
+            log.warn("TrackingMore connection error on {}, attempt {}/{}: {}", 
+                    endpoint, attempt, policy.maxAttempts(), e.getMessage());
+            long duration = System.nanoTime() - start;
+            concurrencyLimiter.releaseFailed();
+            breaker.onFailure(duration);
+            retryOrFail(endpoint, policy, operation, attempt, result, e);
+            
+        } catch (RestClientException e) {
+            if (!(e.getCause() instanceof HttpMessageNotReadableException)) {
+                concurrencyLimiter.releaseIgnored();
+                breaker.onIgnored();
+                result.completeExceptionally(e);
+                return;
+            }
+            // Upstream answered with a body we cannot decode: its fault, not ours
+            log.warn("Unreadable TrackingMore response on {}, attempt {}/{}: {}",
+                    endpoint, attempt, policy.maxAttempts(), e.getMessage());
+            long duration = System.nanoTime() - start;
+            concurrencyLimiter.releaseIgnored();
+            breaker.onFailure(duration);
+            result.completeExceptionally(new TrackingMoreException(
+                    "UPSTREAM_ERROR", "Unreadable response from tracking service", e));
+            
+        } catch (RuntimeException e) {
+            // Anything unexpected goes straight to the caller
+            concurrencyLimiter.releaseIgnored();
+            breaker.onIgnored();
+            result.completeExceptionally(e);
+        }
     }
 
-    private void onSuccess() {
-        consecutiveFailures.set(0);
+    private <T> void retryOrFail(String endpoint, RetryPolicy policy, Supplier<T> operation, int attempt,
+            CompletableFuture<T> result, Exception lastException) {
+        if (attempt >= policy.maxAttempts()) {
+            // All retries exhausted
+            result.completeExceptionally(new TrackingMoreUnavailableException(
+                    "TrackingMore service unavailable after " + attempt + " attempts",
+                    lastException
+            ));
+            return;
+        }
+
+        scheduleRetry(endpoint, policy, operation, attempt, result, policy.backoffMillis(attempt), lastException);
     }
 
-    private void onFailure() {
-        int failures = consecutiveFailures.incrementAndGet();
-        if (failures >= FAILURE_THRESHOLD) {
-            circuitOpenUntil = System.currentTimeMillis() + CIRCUIT_OPEN_DURATION_MS;
-            log.error("Circuit breaker opened after {} consecutive failures", failures);
+    /**
+     * Pause all upstream calls for the window TrackingMore asked for, then
+     * retry this one after it if attempts remain and the wait is short
+     * enough; otherwise fail with the window as {@code Retry-After}.
+     */
+    private <T> void onThrottled(String endpoint, RetryPolicy policy, Supplier<T> operation, int attempt,
+            CompletableFuture<T> result, HttpClientErrorException e) {
+        Duration pause = throttlePause(e);
+        upstreamGovernor.pause(pause);
+        meterRegistry.counter("upstream.throttled", "endpoint", endpoint).increment();
+        log.warn("TrackingMore rate limited {} (attempt {}/{}), pausing upstream calls for {}ms",
+                endpoint, attempt, policy.maxAttempts(), pause.toMillis());
+
+        Duration remaining = RequestContext.remaining();
+        if (attempt < policy.maxAttempts() && pause.toMillis() <= maxThrottleRetryWaitMillis
+                && (remaining == null || pause.compareTo(remaining) < 0)) {
+            // Spread the retries held by one pause across a tenth of it
+            long jitterMillis = ThreadLocalRandom.current().nextLong(pause.toMillis() / 10 + 1);
+            scheduleRetry(endpoint, policy, operation, attempt, result, pause.toMillis() + jitterMillis, e);
+            return;
         }
+
+        long retryAfterSeconds = Math.max(1, (pause.toMillis() + 999) / 1000);
+        result.completeExceptionally(new TrackingMoreUnavailableException(
+                "TrackingMore rate limit exceeded. Please retry later.", retryAfterSeconds));
     }
 
-    private boolean isCircuitOpen() {
-        if (circuitOpenUntil == 0) {
-            return false;
+    /**
+     * Read how long to back off from a 429: {@code Retry-After} (seconds or
+     * HTTP date), else {@code X-RateLimit-Reset} (epoch or delta seconds),
+     * else the configured default; capped at {@code max-pause-ms}.
+     */
+    private Duration throttlePause(HttpClientErrorException e) {
+        Duration pause = null;
+        HttpHeaders headers = e.getResponseHeaders();
+        if (headers != null) {
+            String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+            String reset = headers.getFirst(RATE_LIMIT_RESET_HEADER);
+            try {
+                if (retryAfter != null) {
+                    pause = retryAfter.trim().chars().allMatch(Character::isDigit)
+                            ? Duration.ofSeconds(Long.parseLong(retryAfter.trim()))
+                            : Duration.between(Instant.now(),
+                                    ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                } else if (reset != null) {
+                    long value = Long.parseLong(reset.trim());
+                    pause = value > EPOCH_SECONDS_THRESHOLD
+                            ? Duration.between(Instant.now(), Instant.ofEpochSecond(value))
+                            : Duration.ofSeconds(value);
+                }
+            } catch (NumberFormatException | DateTimeParseException ex) {
+                log.debug("Ignoring unparseable rate limit headers: Retry-After={}, reset={}", retryAfter, reset);
+            }
         }
-        
-        if (System.currentTimeMillis() > circuitOpenUntil) {
-            // Half-open: allow one request through
-            log.info("Circuit breaker entering half-open state");
-            circuitOpenUntil = 0;
-            consecutiveFailures.set(FAILURE_THRESHOLD - 2); // Allow 2 successes to close
-            return false;
+
+        if (pause == null || pause.isNegative() || pause.isZero()) {
+            pause = defaultThrottlePause;
+        }
+        return pause.compareTo(maxThrottlePause) > 0 ? maxThrottlePause : pause;
+    }
+
+    private <T> void scheduleRetry(String endpoint, RetryPolicy policy, Supplier<T> operation, int attempt,
+            CompletableFuture<T> result, long delayMillis, Exception lastException) {
+        Duration remaining = RequestContext.remaining();
+        if (remaining != null && delayMillis >= remaining.toMillis()) {
+            // The retry could not start before the caller's deadline
+            deadlineExceeded(endpoint);
+            result.completeExceptionally(new DeadlineExceededException(
+                    "Request deadline leaves no time to retry TrackingMore " + endpoint + " after "
+                            + attempt + " attempts", lastException));
+            return;
+        }
+
+        Runnable retry = RequestContext.propagate(() -> attempt(endpoint, policy, operation, attempt + 1, result));
+        try {
+            // The timer thread only hands the attempt over; it never blocks on upstream
+            retryScheduler.schedule(() -> submitRetry(endpoint, retry, result, lastException),
+                    delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new TrackingMoreUnavailableException(
+                    "TrackingMore retry scheduler is shut down", lastException));
+        }
+    }
+
+    private <T> void submitRetry(String endpoint, Runnable retry, CompletableFuture<T> result,
+            Exception lastException) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            retryExecutor.execute(retry);
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("upstream.retry.rejected", "endpoint", endpoint).increment();
+            result.completeExceptionally(new TrackingMoreUnavailableException(
+                    "Too many pending TrackingMore retries", lastException));
+        }
+    }
+
+    private void deadlineExceeded(String endpoint) {
+        meterRegistry.counter("upstream.deadline.exceeded", "endpoint", endpoint).increment();
+    }
+
+    /**
+     * Wait for a call's result, but no longer than the request deadline.
+     * Giving up cancels the result, so pending retries are dropped.
+     */
+    private <T> T await(CompletableFuture<T> result) {
+        Duration remaining = RequestContext.remaining();
+        try {
+            return remaining == null ? result.get() : result.get(remaining.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(false);
+            throw new DeadlineExceededException("Request deadline passed while waiting for TrackingMore");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            throw new TrackingMoreUnavailableException("Request interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new TrackingMoreUnavailableException("TrackingMore request failed", e.getCause());
         }
-        
-        return true;
     }
 
     private TrackingMoreException mapClientError(HttpClientErrorException e) {
@@ -254,73 +791,13 @@ public class TrackingMoreClientImpl implements TrackingMoreClient {
         } else if (status.value() == 404) {
             code = "TRACKING_NOT_FOUND";
             message = "Tracking not found in upstream service";
-        } else if (status.value() == 429) {
-            code = "UPSTREAM_RATE_LIMIT";
-            message = "TrackingMore rate limit exceeded";
         }
 
         return new TrackingMoreException(code, message, status.value());
     }
 
-    private void sleep(long millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new TrackingMoreUnavailableException("Request interrupted", e);
-        }
-    }
-
-    private List<TrackingMoreTrackingItem> parseTrackingItems(Object data) {
-        if (data == null) {
-            return List.of();
-        }
-        
-        try {
-            if (data instanceof List<?> list) {
-                return list.stream()
-                        .map(item -> objectMapper.convertValue(item, TrackingMoreTrackingItem.class))
-                        .toList();
-            }
-            return List.of();
-        } catch (Exception e) {
-            log.warn("Unable to parse tracking items from data: {} - {}", data.getClass(), e.getMessage());
-            return List.of();
-        }
-    }
-
-    private TrackingMoreTrackingItem parseTrackingItem(Object data) {
-        // Handle the data parsing - TrackingMore GET returns an array of tracking items
-        if (data == null) {
-            return null;
-        }
-        
-        try {
-            // TrackingMore returns {data: [{...}]} - an array of items
-            if (data instanceof List<?> list && !list.isEmpty()) {
-                // Convert the first item in the list to TrackingMoreTrackingItem
-                Object firstItem = list.get(0);
-                return objectMapper.convertValue(firstItem, TrackingMoreTrackingItem.class);
-            }
-            
-            // If it's already the correct type
-            if (data instanceof TrackingMoreTrackingItem item) {
-                return item;
-            }
-            
-            // Try to convert directly (might be a LinkedHashMap)
-            return objectMapper.convertValue(data, TrackingMoreTrackingItem.class);
-        } catch (Exception e) {
-            log.warn("Unable to parse tracking item from data: {} - {}", data.getClass(), e.getMessage());
-            return null;
-        }
-    }
-
-    private List<String> parseCourierCodes(Object data) {
-        // Parse courier detection response
-        log.debug("Parsing courier codes from: {}", data);
-        return List.of();
-    }
-
     private record DetectRequest(String tracking_number) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record DetectedCourier(@JsonProperty("courier_code") String courierCode) {}
 }
@@ -0,0 +1,335 @@
+package com.mailit.wrapper.client;
+
+import com.mailit.wrapper.exception.ServiceOverloadedException;
+import com.mailit.wrapper.util.RequestContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Adaptive limit on concurrent calls to TrackingMore.
+ *
+ * <p>Where {@link UpstreamGovernor} caps the call rate to fit our quota,
+ * this caps how many calls are in flight at once to fit upstream's current
+ * capacity, which varies through the day. The limit follows AIMD driven by
+ * latency. Each endpoint keeps its own short-term average latency and its
+ * own baseline, the {@code baseline-percentile}-th of its last
+ * {@code baseline-window} successful calls, so a slow batch read is not
+ * judged against a fast delete. When a call's endpoint average exceeds
+ * {@code tolerance} times its baseline, or a call fails with a 5xx,
+ * connection error or 429, the limit is multiplied by
+ * {@code backoff-ratio} (at most once per round of calls). Otherwise,
+ * while at least half the limit is in use, it grows by one per round.
+ * Only successful calls are latency samples: 4xx answers and failures
+ * often return early and would drag the baseline down.</p>
+ *
+ * <p>Calls over the limit wait up to {@code max-wait-ms} (never past their
+ * request's deadline); calls that would wait longer, or arrive when
+ * {@code max-queue} are already waiting, are rejected with
+ * {@link ServiceOverloadedException}.</p>
+ *
+ * <p>Metrics: {@code upstream.concurrency.{limit,in_flight,queued}},
+ * {@code upstream.concurrency.rejected{reason}},
+ * {@code upstream.concurrency.baseline{endpoint}} (in ms).</p>
+ */
+@Slf4j
+@Component
+public class UpstreamConcurrencyLimiter {
+
+    private static final double SHORT_RTT_WEIGHT = 0.1;
+
+    private final boolean enabled;
+    private final double minLimit;
+    private final double maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final long maxWaitNanos;
+    private final int maxQueue;
+    private final int baselineWindow;
+    private final double baselinePercentile;
+    private final int minSamples;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long samplesSinceDecrease;
+    private final Map<String, LatencyWindow> latencies = new HashMap<>();
+
+    private final Counter queueFull;
+    private final Counter timedOut;
+
+    public UpstreamConcurrencyLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${trackingmore.concurrency.enabled:true}") boolean enabled,
+            @Value("${trackingmore.concurrency.initial-limit:10}") int initialLimit,
+            @Value("${trackingmore.concurrency.min-limit:2}") int minLimit,
+            @Value("${trackingmore.concurrency.max-limit:50}") int maxLimit,
+            @Value("${trackingmore.concurrency.tolerance:2.0}") double tolerance,
+            @Value("${trackingmore.concurrency.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${trackingmore.concurrency.max-wait-ms:100}") long maxWaitMillis,
+            @Value("${trackingmore.concurrency.max-queue:100}") int maxQueue,
+            @Value("${trackingmore.concurrency.baseline-window:500}") int baselineWindow,
+            @Value("${trackingmore.concurrency.baseline-percentile:10}") double baselinePercentile,
+            @Value("${trackingmore.concurrency.min-samples:20}") int minSamples) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.maxQueue = maxQueue;
+        this.baselineWindow = Math.max(1, baselineWindow);
+        this.baselinePercentile = baselinePercentile;
+        this.minSamples = Math.max(1, Math.min(minSamples, this.baselineWindow));
+        this.meterRegistry = meterRegistry;
+
+        this.queueFull = meterRegistry.counter("upstream.concurrency.rejected", "reason", "queue_full");
+        this.timedOut = meterRegistry.counter("upstream.concurrency.rejected", "reason", "timeout");
+        Gauge.builder("upstream.concurrency.limit", this, limiter -> limiter.read(() -> limiter.limit))
+                .description("Current adaptive limit on in-flight upstream calls")
+                .register(meterRegistry);
+        Gauge.builder("upstream.concurrency.in_flight", this, limiter -> limiter.read(() -> limiter.inFlight))
+                .register(meterRegistry);
+        Gauge.builder("upstream.concurrency.queued", this, limiter -> limiter.read(() -> limiter.waiting))
+                .register(meterRegistry);
+
+        log.info("Upstream concurrency limit: enabled={}, initial={}, range=[{}, {}], tolerance={}, maxWait={}ms",
+                enabled, (int) limit, minLimit, maxLimit, tolerance, maxWaitMillis);
+    }
+
+    /**
+     * Wait for a slot to call the upstream API. Every successful acquire
+     * must be followed by exactly one of {@link #release},
+     * {@link #releaseFailed} or {@link #releaseIgnored}.
+     *
+     * @throws ServiceOverloadedException if no slot frees up in time
+     */
+    public void acquire() {
+        if (!enabled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (waiting >= maxQueue) {
+                queueFull.increment();
+                throw overloaded();
+            }
+
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                Duration untilDeadline = RequestContext.remaining();
+                if (untilDeadline != null) {
+                    remaining = Math.min(remaining, untilDeadline.toNanos());
+                }
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        timedOut.increment();
+                        throw overloaded();
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw overloaded();
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give back the slot of a successful call and feed its latency into
+     * the limit.
+     *
+     * @param endpoint the endpoint called, whose baseline the latency is judged against
+     * @param durationNanos how long the call took
+     */
+    public void release(String endpoint, long durationNanos) {
+        if (!enabled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            inFlight--;
+            int before = (int) limit;
+            LatencyWindow window = latencies.computeIfAbsent(endpoint, this::newLatencyWindow);
+            window.record(durationNanos);
+            samplesSinceDecrease++;
+            if (window.isCongested(tolerance)) {
+                decrease(endpoint, window);
+            } else if (inFlight + 1 >= limit / 2) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            signal(before);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give back the slot of a call that failed with a 5xx, connection error
+     * or 429, and back off. The call's latency is not sampled.
+     */
+    public void releaseFailed() {
+        if (!enabled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            inFlight--;
+            samplesSinceDecrease++;
+            decrease(null, null);
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give back a slot without a sample, e.g. when the call was never sent
+     * or answered with a 4xx.
+     */
+    public void releaseIgnored() {
+        if (!enabled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            inFlight--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(String endpoint, LatencyWindow window) {
+        // Calls started before the last decrease still report the old load
+        if (samplesSinceDecrease < (long) limit) {
+            return;
+        }
+
+        double previous = limit;
+        limit = Math.max(minLimit, limit * backoffRatio);
+        samplesSinceDecrease = 0;
+        if ((int) limit != (int) previous) {
+            if (window == null) {
+                log.info("Upstream concurrency limit lowered to {} (failed call)", (int) limit);
+            } else {
+                log.info("Upstream concurrency limit lowered to {} ({} latency {}ms vs baseline {}ms)",
+                        (int) limit, endpoint, TimeUnit.NANOSECONDS.toMillis((long) window.shortRttNanos),
+                        TimeUnit.NANOSECONDS.toMillis((long) window.baselineNanos));
+            }
+        }
+    }
+
+    private void signal(int limitBefore) {
+        if ((int) limit > limitBefore) {
+            released.signalAll();
+        } else {
+            released.signal();
+        }
+    }
+
+    private LatencyWindow newLatencyWindow(String endpoint) {
+        LatencyWindow window = new LatencyWindow(baselineWindow, baselinePercentile, minSamples);
+        Gauge.builder("upstream.concurrency.baseline", window, w -> w.baselineNanos / 1_000_000.0)
+                .tag("endpoint", endpoint)
+                .baseUnit("milliseconds")
+                .description("Uncongested latency an endpoint's recent calls are compared with")
+                .register(meterRegistry);
+        return window;
+    }
+
+    private double read(DoubleSupplier value) {
+        lock.lock();
+        try {
+            return value.getAsDouble();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ServiceOverloadedException overloaded() {
+        return new ServiceOverloadedException(
+                "Tracking service is at its concurrency limit. Please retry shortly.", 1);
+    }
+
+    /**
+     * Recent successful-call latencies of one endpoint. Guarded by the
+     * limiter's lock, except that the gauge reads the baseline.
+     */
+    private static final class LatencyWindow {
+
+        private final long[] samples;
+        private final double percentile;
+        private final int minSamples;
+        private final int recomputeEvery;
+        private int next;
+        private int recorded;
+        private int sinceRecompute;
+
+        private double shortRttNanos;
+        // 0 until minSamples calls are recorded
+        private volatile double baselineNanos;
+
+        LatencyWindow(int size, double percentile, int minSamples) {
+            this.samples = new long[size];
+            this.percentile = percentile;
+            this.minSamples = minSamples;
+            this.recomputeEvery = Math.max(1, size / 10);
+        }
+
+        void record(long nanos) {
+            shortRttNanos = recorded == 0 ? nanos : shortRttNanos + SHORT_RTT_WEIGHT * (nanos - shortRttNanos);
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (recorded < samples.length) {
+                recorded++;
+            }
+
+            // A low percentile of a window follows lasting shifts in upstream
+            // latency in both directions, but not a single outlier
+            if (recorded >= minSamples && (baselineNanos == 0 || ++sinceRecompute >= recomputeEvery)) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, recorded);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile / 100.0 * recorded) - 1;
+                baselineNanos = Math.max(1, sorted[Math.max(0, Math.min(index, recorded - 1))]);
+            }
+        }
+
+        boolean isCongested(double tolerance) {
+            return baselineNanos > 0 && shortRttNanos > tolerance * baselineNanos;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.mailit.wrapper.client;
+
+import com.mailit.wrapper.exception.ServiceOverloadedException;
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.RateLimitPlan;
+import com.mailit.wrapper.util.RequestContext;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Global limiter on calls to TrackingMore, shared by all tenants.
+ * 
+ * <p>Every upstream call (including retries) takes a permit from a single
+ * token bucket sized to the upstream quota of our API key. While permits are
+ * available calls proceed immediately. Once they run out, callers queue and
+ * are released in weighted fair queueing order: each waiting call is tagged
+ * with a virtual finish time advanced by {@code 1 / weight} for its client,
+ * where the weight comes from the client's {@link RateLimitPlan}. A burst from
+ * one tenant therefore only delays that tenant, and higher plans get a larger
+ * share of the capacity while others are waiting.</p>
+ * 
+ * <p>Calls that would wait longer than {@code max-wait-ms} (or past their
+ * request's deadline), or arrive when the queue is full, are rejected with
+ * {@link ServiceOverloadedException}.</p>
+ * 
+ * <p>When TrackingMore answers 429, {@link #pause} holds every call until
+ * its {@code Retry-After} window has passed; queued calls are then released
+ * at the bucket's rate rather than all at once.</p>
+ */
+@Slf4j
+@Component
+public class UpstreamGovernor {
+
+    /**
+     * Weight for calls made outside an authenticated request.
+     */
+    private static final int SYSTEM_WEIGHT = RateLimitPlan.PRO.getUpstreamWeight();
+    private static final long SYSTEM_CLIENT_ID = 0L;
+
+    private final Bucket permits;
+    private final long maxWaitMillis;
+    private final int maxQueue;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparingDouble(Waiter::finishTag).thenComparingLong(Waiter::sequence));
+
+    /**
+     * Client ID to the finish tag of its last queued call. Guarded by {@link #lock}.
+     */
+    private final Map<Long, Double> lastFinishTags = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+    private boolean paused;
+    private long pausedUntilNanos;
+
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter queueFull;
+    private final Counter timedOut;
+
+    public UpstreamGovernor(
+            MeterRegistry meterRegistry,
+            @Value("${trackingmore.governor.permits-per-second:10}") long permitsPerSecond,
+            @Value("${trackingmore.governor.burst:10}") long burst,
+            @Value("${trackingmore.governor.max-wait-ms:5000}") long maxWaitMillis,
+            @Value("${trackingmore.governor.max-queue:500}") int maxQueue) {
+        this.maxWaitMillis = maxWaitMillis;
+        this.maxQueue = maxQueue;
+        this.permits = Bucket.builder()
+                .addLimit(Bandwidth.classic(burst, Refill.greedy(permitsPerSecond, Duration.ofSeconds(1))))
+                .build();
+
+        log.info("Configuring upstream governor: {} calls/s, burst={}, maxWait={}ms, maxQueue={}",
+                permitsPerSecond, burst, maxWaitMillis, maxQueue);
+
+        this.meterRegistry = meterRegistry;
+        this.queueFull = meterRegistry.counter("upstream.governor.rejected", "reason", "queue_full");
+        this.timedOut = meterRegistry.counter("upstream.governor.rejected", "reason", "timeout");
+        meterRegistry.gauge("upstream.governor.queue.size", queue, q -> size());
+        meterRegistry.gauge("upstream.governor.pause.remaining", this, governor -> governor.remainingPause().toMillis());
+
+        this.dispatcher = new Thread(this::dispatch, "upstream-governor");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Wait for a permit to call the upstream API.
+     * 
+     * <p>The caller's plan is taken from {@link RequestContext}.</p>
+     * 
+     * @throws ServiceOverloadedException if no permit is granted in time
+     */
+    public void acquire() {
+        AuthenticatedClient client = RequestContext.client();
+        long clientId = client != null ? client.id() : SYSTEM_CLIENT_ID;
+        int weight = client != null ? client.plan().getUpstreamWeight() : SYSTEM_WEIGHT;
+        String plan = client != null ? client.plan().name() : "SYSTEM";
+
+        long start = System.nanoTime();
+        Waiter waiter;
+
+        lock.lock();
+        try {
+            // Nobody waiting: take a permit directly if one is free
+            if (queue.isEmpty() && !isPaused() && permits.tryConsume(1)) {
+                record(plan, start);
+                return;
+            }
+
+            if (queue.size() >= maxQueue) {
+                queueFull.increment();
+                throw overloaded();
+            }
+
+            double startTag = Math.max(virtualTime, lastFinishTags.getOrDefault(clientId, 0.0));
+            double finishTag = startTag + 1.0 / weight;
+            lastFinishTags.put(clientId, finishTag);
+
+            waiter = new Waiter(finishTag, sequence++, new CompletableFuture<>());
+            queue.add(waiter);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        long waitMillis = maxWaitMillis;
+        Duration remaining = RequestContext.remaining();
+        if (remaining != null) {
+            waitMillis = Math.max(0, Math.min(waitMillis, remaining.toMillis()));
+        }
+
+        try {
+            waiter.granted().get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Lost the race with the dispatcher: the permit is ours after all
+            if (!waiter.granted().cancel(false)) {
+                record(plan, start);
+                return;
+            }
+            timedOut.increment();
+            log.warn("Upstream call for client {} waited {}ms without a permit", clientId, waitMillis);
+            throw overloaded();
+        } catch (InterruptedException e) {
+            waiter.granted().cancel(false);
+            Thread.currentThread().interrupt();
+            throw overloaded();
+        } catch (ExecutionException e) {
+            throw overloaded();
+        }
+
+        record(plan, start);
+    }
+
+    /**
+     * Hold all upstream calls for a while, e.g. after TrackingMore asked us
+     * to slow down. Overlapping pauses end at the latest of their ends.
+     * 
+     * @param duration how long to hold calls from now
+     */
+    public void pause(Duration duration) {
+        long until = System.nanoTime() + duration.toNanos();
+        lock.lock();
+        try {
+            if (!paused || until - pausedUntilNanos > 0) {
+                paused = true;
+                pausedUntilNanos = until;
+                // Whatever the bucket held was evidently more than upstream allows
+                permits.tryConsumeAsMuchAsPossible();
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Time until a pause ends.
+     * 
+     * @return remaining pause, zero if not paused
+     */
+    public Duration remainingPause() {
+        lock.lock();
+        try {
+            return isPaused() ? Duration.ofNanos(pausedUntilNanos - System.nanoTime()) : Duration.ZERO;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+    }
+
+    private void dispatch() {
+        while (running) {
+            lock.lock();
+            try {
+                Waiter head = queue.peek();
+                if (head == null) {
+                    changed.await();
+                    continue;
+                }
+
+                if (head.granted().isDone()) {
+                    // Timed out or cancelled while queued
+                    queue.poll();
+                    continue;
+                }
+
+                if (isPaused()) {
+                    changed.awaitNanos(pausedUntilNanos - System.nanoTime());
+                    continue;
+                }
+
+                ConsumptionProbe probe = permits.tryConsumeAndReturnRemaining(1);
+                if (probe.isConsumed()) {
+                    queue.poll();
+                    virtualTime = head.finishTag();
+                    if (!head.granted().complete(null)) {
+                        // Caller gave up at the same moment; hand the permit back
+                        permits.addTokens(1);
+                    }
+                    pruneFinishTags();
+                } else {
+                    // Wake early if a new waiter arrives, to re-evaluate the head
+                    changed.awaitNanos(probe.getNanosToWaitForRefill());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Upstream governor dispatch failed", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Forget clients whose last call has been served; they restart from the
+     * current virtual time, so idle periods earn no credit.
+     */
+    private void pruneFinishTags() {
+        if (queue.isEmpty() || lastFinishTags.size() > 4 * maxQueue) {
+            lastFinishTags.values().removeIf(tag -> tag <= virtualTime);
+        }
+    }
+
+    /**
+     * Must hold {@link #lock}.
+     */
+    private boolean isPaused() {
+        if (paused && System.nanoTime() - pausedUntilNanos >= 0) {
+            paused = false;
+        }
+        return paused;
+    }
+
+    private int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(String plan, long start) {
+        Timer.builder("upstream.governor.wait")
+                .tag("plan", plan)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private ServiceOverloadedException overloaded() {
+        return new ServiceOverloadedException(
+                "Tracking service capacity is temporarily exhausted. Please retry shortly.", 1);
+    }
+
+    private record Waiter(double finishTag, long sequence, CompletableFuture<Void> granted) {}
+}
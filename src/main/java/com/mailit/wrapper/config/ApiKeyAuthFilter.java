@@ -1,9 +1,15 @@
 package com.mailit.wrapper.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mailit.wrapper.controller.AuthController;
+import com.mailit.wrapper.exception.AuthenticationThrottledException;
+import com.mailit.wrapper.exception.ServiceOverloadedException;
+import com.mailit.wrapper.exception.WrapperException;
+import com.mailit.wrapper.model.AuthenticatedClient;
 import com.mailit.wrapper.model.dto.response.ErrorResponse;
-import com.mailit.wrapper.model.entity.Client;
 import com.mailit.wrapper.service.AuthService;
+import com.mailit.wrapper.service.SessionTokenService;
+import com.mailit.wrapper.util.RequestContext;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,10 +28,13 @@ import java.io.IOException;
 import java.util.Optional;
 
 /**
- * Filter that authenticates API requests via X-API-Key header.
+ * Filter that authenticates API requests via X-API-Key header or a
+ * session token in the Authorization header.
  * 
- * <p>Validates the API key and stores the authenticated client
- * in the request attributes for downstream use.</p>
+ * <p>Validates the credential and stores an immutable
+ * {@link AuthenticatedClient} in the request attributes for downstream use. Session tokens are
+ * verified statelessly by {@link SessionTokenService}; the token
+ * exchange endpoint itself only accepts an API key.</p>
  * 
  * <p>This is a lightweight alternative to full Spring Security,
  * suitable for simple API key authentication.</p>
@@ -37,10 +46,13 @@ import java.util.Optional;
 public class ApiKeyAuthFilter extends OncePerRequestFilter {
 
     public static final String API_KEY_HEADER = "X-API-Key";
+    public static final String AUTHORIZATION_HEADER = "Authorization";
+    public static final String BEARER_PREFIX = "Bearer ";
     public static final String CLIENT_ATTRIBUTE = "authenticatedClient";
     public static final String API_KEY_PREFIX_MDC_KEY = "apiKeyPrefix";
 
     private final AuthService authService;
+    private final SessionTokenService sessionTokenService;
     private final ObjectMapper objectMapper;
 
     @Override
@@ -50,36 +62,62 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
             FilterChain filterChain) throws ServletException, IOException {
         
         String apiKey = request.getHeader(API_KEY_HEADER);
+        String bearerToken = extractBearerToken(request);
+        boolean tokenExchange = AuthController.TOKEN_PATH.equals(request.getRequestURI());
         
-        if (apiKey == null || apiKey.isBlank()) {
-            log.debug("Missing API key in request to {}", request.getRequestURI());
-            sendUnauthorized(response, "Missing API key. Include X-API-Key header.");
-            return;
-        }
-        
-        Optional<Client> clientOpt = authService.validateApiKey(apiKey);
+        Optional<AuthenticatedClient> clientOpt;
         
-        if (clientOpt.isEmpty()) {
-            log.warn("Invalid API key attempt: prefix={}", extractPrefix(apiKey));
-            sendUnauthorized(response, "Invalid API key.");
-            return;
+        if (bearerToken != null && !tokenExchange) {
+            clientOpt = sessionTokenService.verify(bearerToken);
+            
+            if (clientOpt.isEmpty()) {
+                log.debug("Invalid or expired session token in request to {}", request.getRequestURI());
+                sendUnauthorized(response, "Invalid or expired session token.");
+                return;
+            }
+        } else {
+            if (apiKey == null || apiKey.isBlank()) {
+                log.debug("Missing API key in request to {}", request.getRequestURI());
+                sendUnauthorized(response, "Missing API key. Include X-API-Key header.");
+                return;
+            }
+            
+            try {
+                clientOpt = authService.validateApiKey(apiKey, request.getRemoteAddr());
+            } catch (AuthenticationThrottledException e) {
+                sendRetryLater(response, e, e.getRetryAfterSeconds());
+                return;
+            } catch (ServiceOverloadedException e) {
+                log.warn("Shedding request to {}: API key verification overloaded", request.getRequestURI());
+                sendRetryLater(response, e, e.getRetryAfterSeconds());
+                return;
+            }
+            
+            if (clientOpt.isEmpty()) {
+                log.warn("Invalid API key attempt: prefix={}", extractPrefix(apiKey));
+                sendUnauthorized(response, "Invalid API key.");
+                return;
+            }
         }
         
-        Client client = clientOpt.get();
+        AuthenticatedClient client = clientOpt.get();
         
         // Store client for downstream use
         request.setAttribute(CLIENT_ATTRIBUTE, client);
         
+        RequestContext.setClient(client);
+        
         // Add API key prefix to MDC for log correlation
-        MDC.put(API_KEY_PREFIX_MDC_KEY, client.getApiKeyPrefix());
+        MDC.put(API_KEY_PREFIX_MDC_KEY, client.apiKeyPrefix());
         
         log.debug("Authenticated client: id={}, name={}, plan={}", 
-                client.getId(), client.getName(), client.getPlan());
+                client.id(), client.name(), client.plan());
         
         try {
             filterChain.doFilter(request, response);
         } finally {
             MDC.remove(API_KEY_PREFIX_MDC_KEY);
+            RequestContext.clear();
         }
     }
 
@@ -106,6 +144,27 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
         response.getWriter().write(objectMapper.writeValueAsString(error));
     }
 
+    private void sendRetryLater(HttpServletResponse response, WrapperException ex, long retryAfterSeconds)
+            throws IOException {
+        response.setStatus(ex.getHttpStatus());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        
+        String correlationId = MDC.get(CorrelationIdFilter.CORRELATION_ID_MDC_KEY);
+        ErrorResponse error = new ErrorResponse(ex.getCode(), ex.getMessage(), correlationId);
+        
+        response.getWriter().write(objectMapper.writeValueAsString(error));
+    }
+
+    private String extractBearerToken(HttpServletRequest request) {
+        String authorization = request.getHeader(AUTHORIZATION_HEADER);
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        String token = authorization.substring(BEARER_PREFIX.length()).trim();
+        return token.isEmpty() ? null : token;
+    }
+
     private String extractPrefix(String apiKey) {
         if (apiKey == null || apiKey.length() < 14) {
             return "invalid";
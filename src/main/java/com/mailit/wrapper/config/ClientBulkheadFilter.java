@@ -0,0 +1,178 @@
+package com.mailit.wrapper.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mailit.wrapper.exception.ConcurrencyLimitException;
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.RateLimitPlan;
+import com.mailit.wrapper.model.dto.response.ErrorResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filter that caps how many requests each client may have in flight.
+ * 
+ * <p>Each client gets a semaphore sized by {@link RateLimitPlan#getMaxConcurrent()}.
+ * A request that finds no free permit waits up to {@code bulkhead.max-wait-ms}
+ * and is then rejected with 429, so one client cannot tie up the servlet
+ * thread pool with slow upstream calls.</p>
+ * 
+ * <p>A client's semaphore exists only while it has requests in flight or
+ * waiting, and is resized when a request arrives under a different plan,
+ * so a plan change applies to the next request.</p>
+ * 
+ * <p>Runs after {@link ApiKeyAuthFilter}; unauthenticated requests pass through.</p>
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2) // Run after ApiKeyAuthFilter
+public class ClientBulkheadFilter extends OncePerRequestFilter {
+
+    private static final long RETRY_AFTER_SECONDS = 1;
+
+    private final ObjectMapper objectMapper;
+    private final long maxWaitMillis;
+
+    /**
+     * Client ID to its permits, present while the client has requests in
+     * flight or waiting. Entries are only created, resized and removed
+     * inside {@link ConcurrentHashMap#compute}.
+     */
+    private final Map<Long, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    private final Map<RateLimitPlan, AtomicInteger> inFlightByPlan = new EnumMap<>(RateLimitPlan.class);
+    private final MeterRegistry meterRegistry;
+
+    public ClientBulkheadFilter(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${bulkhead.max-wait-ms:100}") long maxWaitMillis) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.maxWaitMillis = maxWaitMillis;
+
+        for (RateLimitPlan plan : RateLimitPlan.values()) {
+            AtomicInteger inFlight = new AtomicInteger();
+            inFlightByPlan.put(plan, inFlight);
+            meterRegistry.gauge("bulkhead.in_flight", Tags.of("plan", plan.name()), inFlight);
+        }
+        meterRegistry.gaugeMapSize("bulkhead.clients", Tags.empty(), bulkheads);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        
+        AuthenticatedClient client = (AuthenticatedClient) request.getAttribute(ApiKeyAuthFilter.CLIENT_ATTRIBUTE);
+        if (client == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        int maxConcurrent = client.plan().getMaxConcurrent();
+        Bulkhead permits = bulkheads.compute(client.id(), (id, existing) -> {
+            Bulkhead bulkhead = existing != null ? existing : new Bulkhead(client.plan());
+            bulkhead.resize(client.plan());
+            bulkhead.users++;
+            return bulkhead;
+        });
+        
+        try {
+            if (!tryAcquire(permits)) {
+                log.warn("Concurrency limit reached for client: id={}, plan={}, max={}",
+                        client.id(), client.plan(), maxConcurrent);
+                meterRegistry.counter("bulkhead.rejected", "plan", client.plan().name()).increment();
+                sendTooManyConcurrent(response, new ConcurrencyLimitException(maxConcurrent));
+                return;
+            }
+            
+            AtomicInteger inFlight = inFlightByPlan.get(client.plan());
+            inFlight.incrementAndGet();
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                inFlight.decrementAndGet();
+                permits.release();
+            }
+        } finally {
+            bulkheads.computeIfPresent(client.id(), (id, bulkhead) -> --bulkhead.users == 0 ? null : bulkhead);
+        }
+    }
+
+    private boolean tryAcquire(Semaphore permits) {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (maxWaitMillis <= 0) {
+            return false;
+        }
+        try {
+            return permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void sendTooManyConcurrent(HttpServletResponse response, ConcurrencyLimitException ex)
+            throws IOException {
+        response.setStatus(ex.getHttpStatus());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+        
+        String correlationId = MDC.get(CorrelationIdFilter.CORRELATION_ID_MDC_KEY);
+        ErrorResponse error = new ErrorResponse(ex.getCode(), ex.getMessage(), correlationId);
+        
+        response.getWriter().write(objectMapper.writeValueAsString(error));
+    }
+
+    /**
+     * A client's permits, sized for the plan it was last used with.
+     */
+    private static final class Bulkhead extends Semaphore {
+
+        // Guarded by the map entry's compute
+        private RateLimitPlan plan;
+        private int users;
+
+        Bulkhead(RateLimitPlan plan) {
+            super(plan.getMaxConcurrent());
+            this.plan = plan;
+        }
+
+        /**
+         * Adjust the permits to a new plan's cap. When the cap shrinks,
+         * requests already in flight drain before new ones are admitted.
+         */
+        void resize(RateLimitPlan newPlan) {
+            int delta = newPlan.getMaxConcurrent() - plan.getMaxConcurrent();
+            if (delta > 0) {
+                release(delta);
+            } else if (delta < 0) {
+                reducePermits(-delta);
+            }
+            plan = newPlan;
+        }
+    }
+}
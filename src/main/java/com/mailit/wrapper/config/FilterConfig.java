@@ -12,6 +12,9 @@ import org.springframework.core.Ordered;
  * <ol>
  *   <li>CorrelationIdFilter - Sets up request tracing</li>
  *   <li>ApiKeyAuthFilter - Authenticates requests</li>
+ *   <li>ClientBulkheadFilter - Caps in-flight requests per client</li>
+ *   <li>RequestDeadlineFilter - Sets the request's deadline, after the
+ *       bulkhead wait and before any upstream work that reads it</li>
  * </ol>
  */
 @Configuration
@@ -45,4 +48,32 @@ public class FilterConfig {
         registration.setName("apiKeyAuthFilter");
         return registration;
     }
+
+    /**
+     * Register ClientBulkheadFilter after ApiKeyAuthFilter.
+     */
+    @Bean
+    public FilterRegistrationBean<ClientBulkheadFilter> clientBulkheadFilterRegistration(
+            ClientBulkheadFilter filter) {
+        FilterRegistrationBean<ClientBulkheadFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(filter);
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        registration.setName("clientBulkheadFilter");
+        return registration;
+    }
+
+    /**
+     * Register RequestDeadlineFilter after ClientBulkheadFilter.
+     */
+    @Bean
+    public FilterRegistrationBean<RequestDeadlineFilter> requestDeadlineFilterRegistration(
+            RequestDeadlineFilter filter) {
+        FilterRegistrationBean<RequestDeadlineFilter> registration = new FilterRegistrationBean<>();
+        registration.setFilter(filter);
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 3);
+        registration.setName("requestDeadlineFilter");
+        return registration;
+    }
 }
@@ -27,6 +27,7 @@ public class OpenApiConfig {
     private int serverPort;
 
     private static final String API_KEY_SCHEME_NAME = "ApiKeyAuth";
+    private static final String BEARER_SCHEME_NAME = "BearerAuth";
 
     @Bean
     public OpenAPI customOpenAPI() {
@@ -41,8 +42,10 @@ public class OpenApiConfig {
                                 .description("Production server")
                 ))
                 .components(new Components()
-                        .addSecuritySchemes(API_KEY_SCHEME_NAME, apiKeySecurityScheme()))
-                .addSecurityItem(new SecurityRequirement().addList(API_KEY_SCHEME_NAME));
+                        .addSecuritySchemes(API_KEY_SCHEME_NAME, apiKeySecurityScheme())
+                        .addSecuritySchemes(BEARER_SCHEME_NAME, bearerSecurityScheme()))
+                .addSecurityItem(new SecurityRequirement().addList(API_KEY_SCHEME_NAME))
+                .addSecurityItem(new SecurityRequirement().addList(BEARER_SCHEME_NAME));
     }
 
     private Info apiInfo() {
@@ -59,6 +62,9 @@ public class OpenApiConfig {
                         
                         ## Authentication
                         All endpoints require an API key in the `X-API-Key` header.
+                        High-volume integrations can exchange the key once via
+                        `POST /api/v1/auth/token` and send `Authorization: Bearer <token>`
+                        until the token expires.
                         
                         ## Rate Limits
                         | Plan | Requests/Day | Trackings/Batch |
@@ -85,4 +91,11 @@ public class OpenApiConfig {
                 .name("X-API-Key")
                 .description("API key for authentication. Format: `sk_live_xxxxx` or `sk_test_xxxxx`");
     }
+
+    private SecurityScheme bearerSecurityScheme() {
+        return new SecurityScheme()
+                .type(SecurityScheme.Type.HTTP)
+                .scheme("bearer")
+                .description("Short-lived session token from `POST /api/v1/auth/token`. Format: `st_xxxxx`");
+    }
 }
@@ -0,0 +1,27 @@
+package com.mailit.wrapper.config;
+
+import com.mailit.wrapper.repository.JdbcBucketProxyManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Configuration for the rate limit bucket backend.
+ * 
+ * <p>With {@code rate-limiting.backend=jdbc}, buckets are shared through the
+ * application database so every instance enforces the same quota. Otherwise
+ * {@link com.mailit.wrapper.service.RateLimitService} keeps buckets in memory.</p>
+ */
+@Slf4j
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "rate-limiting.backend", havingValue = "jdbc")
+    public JdbcBucketProxyManager jdbcBucketProxyManager(JdbcTemplate jdbcTemplate) {
+        log.info("Configuring JDBC rate limit backend (table rate_limit_buckets)");
+        return new JdbcBucketProxyManager(jdbcTemplate);
+    }
+}
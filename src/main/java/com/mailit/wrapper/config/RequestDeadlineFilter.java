@@ -0,0 +1,124 @@
+package com.mailit.wrapper.config;
+
+import com.mailit.wrapper.util.RequestContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter that gives each API request a deadline.
+ *
+ * <p>The timeout is taken from the {@code X-Request-Timeout} header (in
+ * milliseconds) if the client sends one, otherwise from
+ * {@code request-deadline.endpoints.<endpoint>-ms} or
+ * {@code request-deadline.default-ms}, and is capped at
+ * {@code request-deadline.max-ms}. The deadline is stored in
+ * {@link RequestContext}, travels with the request onto upstream worker
+ * threads, and bounds every upstream wait, attempt and retry; work that
+ * cannot finish in time is abandoned with 504.</p>
+ *
+ * <p>Runs after {@link ClientBulkheadFilter}, so time spent waiting for a
+ * bulkhead slot is not charged to the request.</p>
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 3) // Run after ClientBulkheadFilter
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    private static final String API_PATH = "/api/v1/trackings";
+
+    private final long defaultMillis;
+    private final long maxMillis;
+    private final Map<String, Long> endpointMillis;
+
+    public RequestDeadlineFilter(
+            Environment environment,
+            @Value("${request-deadline.default-ms:30000}") long defaultMillis,
+            @Value("${request-deadline.max-ms:120000}") long maxMillis) {
+        this.defaultMillis = defaultMillis;
+        this.maxMillis = maxMillis;
+        this.endpointMillis = Map.of(
+                "create", endpointTimeout(environment, "create"),
+                "get", endpointTimeout(environment, "get"),
+                "batch-get", endpointTimeout(environment, "batch-get"),
+                "list", endpointTimeout(environment, "list"),
+                "delete", endpointTimeout(environment, "delete"));
+
+        log.info("Request deadlines: default={}ms, max={}ms, endpoints={}", defaultMillis, maxMillis, endpointMillis);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+
+        long timeoutMillis = Math.min(timeoutFor(request), maxMillis);
+        RequestContext.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestContext.setDeadline(null);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(API_PATH);
+    }
+
+    private long timeoutFor(HttpServletRequest request) {
+        String header = request.getHeader(TIMEOUT_HEADER);
+        if (header != null) {
+            try {
+                long millis = Long.parseLong(header.trim());
+                if (millis > 0) {
+                    return millis;
+                }
+            } catch (NumberFormatException e) {
+                // Fall back to the endpoint's default below
+            }
+            log.debug("Ignoring invalid {} header: {}", TIMEOUT_HEADER, header);
+        }
+
+        String endpoint = endpoint(request);
+        return endpoint != null ? endpointMillis.get(endpoint) : defaultMillis;
+    }
+
+    /**
+     * Name the tracking endpoint a request is for, matching the routes of
+     * {@link com.mailit.wrapper.controller.TrackingController}.
+     */
+    private static String endpoint(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(API_PATH.length());
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        return switch (request.getMethod()) {
+            case "POST" -> path.isEmpty() ? "create" : path.equals("/batch-get") ? "batch-get" : null;
+            case "GET" -> path.isEmpty() ? "list" : path.indexOf('/', 1) < 0 ? "get" : null;
+            case "DELETE" -> !path.isEmpty() && path.indexOf('/', 1) < 0 ? "delete" : null;
+            default -> null;
+        };
+    }
+
+    private long endpointTimeout(Environment environment, String endpoint) {
+        return environment.getProperty("request-deadline.endpoints." + endpoint + "-ms", Long.class, defaultMillis);
+    }
+}
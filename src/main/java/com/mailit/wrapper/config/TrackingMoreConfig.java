@@ -1,14 +1,45 @@
 package com.mailit.wrapper.config;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.DeserializationProblemHandler;
+import com.mailit.wrapper.util.RequestContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.client.RestClient;
 
+import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Configuration for TrackingMore API client.
@@ -16,9 +47,13 @@ import java.time.Duration;
  * <p>Creates a pre-configured RestClient with:
  * <ul>
  *   <li>Base URL and authentication header</li>
- *   <li>Timeout settings</li>
+ *   <li>A pooled, keep-alive Apache HttpClient transport, so upstream calls
+ *       reuse open TLS connections instead of paying a handshake each time</li>
+ *   <li>Connect, read and pool-lease timeouts, shortened per call to the
+ *       request's remaining deadline</li>
  *   <li>Correlation ID propagation</li>
  *   <li>Request/response logging</li>
+ *   <li>Lenient decoding of list-shaped {@code data} fields</li>
  * </ul>
  */
 @Slf4j
@@ -37,17 +72,137 @@ public class TrackingMoreConfig {
     @Value("${trackingmore.api.timeout.read:30000}")
     private int readTimeout;
 
+    @Value("${trackingmore.api.pool.max-total:50}")
+    private int poolMaxTotal;
+
+    @Value("${trackingmore.api.pool.max-per-route:20}")
+    private int poolMaxPerRoute;
+
+    @Value("${trackingmore.api.pool.lease-timeout:2000}")
+    private int poolLeaseTimeout;
+
+    @Value("${trackingmore.api.pool.idle-timeout:30000}")
+    private int poolIdleTimeout;
+
+    @Value("${trackingmore.api.pool.time-to-live:300000}")
+    private int poolTimeToLive;
+
+    @Value("${trackingmore.api.pool.validate-after-inactivity:2000}")
+    private int poolValidateAfterInactivity;
+
+    /**
+     * Connection pool for TrackingMore. All calls go to one host, so
+     * {@code max-per-route} is the effective limit.
+     */
+    @Bean
+    public PoolingHttpClientConnectionManager trackingMoreConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = new TimedConnectionManager(
+                Timer.builder("upstream.http.pool.lease")
+                        .description("Time spent waiting for a pooled TrackingMore connection")
+                        .register(meterRegistry));
+        connectionManager.setMaxTotal(poolMaxTotal);
+        connectionManager.setDefaultMaxPerRoute(poolMaxPerRoute);
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .setSocketTimeout(readTimeout, TimeUnit.MILLISECONDS)
+                .setTimeToLive(poolTimeToLive, TimeUnit.MILLISECONDS)
+                .setValidateAfterInactivity(poolValidateAfterInactivity, TimeUnit.MILLISECONDS)
+                .build());
+
+        // httpcomponents.httpclient.pool.{total.max,total.connections,route.max.default,total.pending}
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "trackingmore")
+                .bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean
+    public CloseableHttpClient trackingMoreHttpClient(PoolingHttpClientConnectionManager trackingMoreConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(trackingMoreConnectionManager)
+                .setDefaultRequestConfig(requestConfig(poolLeaseTimeout, readTimeout))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(poolIdleTimeout))
+                // Retries are handled (and governed) by TrackingMoreClientImpl
+                .disableAutomaticRetries()
+                .build();
+    }
+
     @Bean
-    public RestClient trackingMoreRestClient(RestClient.Builder builder) {
-        log.info("Configuring TrackingMore client: baseUrl={}, connectTimeout={}ms, readTimeout={}ms",
-                baseUrl, connectTimeout, readTimeout);
+    public RestClient trackingMoreRestClient(RestClient.Builder builder, CloseableHttpClient trackingMoreHttpClient) {
+        log.info("Configuring TrackingMore client: baseUrl={}, connectTimeout={}ms, readTimeout={}ms, "
+                        + "pool={} (per route {})",
+                baseUrl, connectTimeout, readTimeout, poolMaxTotal, poolMaxPerRoute);
+
+        HttpComponentsClientHttpRequestFactory requestFactory =
+                new HttpComponentsClientHttpRequestFactory(trackingMoreHttpClient);
+        requestFactory.setHttpContextFactory((method, uri) -> deadlineContext());
 
         return builder
                 .baseUrl(baseUrl)
+                .requestFactory(requestFactory)
                 .defaultHeader("Tracking-Api-Key", apiKey)
                 .defaultHeader("Content-Type", "application/json")
                 .requestInterceptor(correlationIdInterceptor())
                 .requestInterceptor(loggingInterceptor())
+                .messageConverters(converters -> converters.replaceAll(converter ->
+                        converter instanceof MappingJackson2HttpMessageConverter jackson
+                                ? new MappingJackson2HttpMessageConverter(lenientMapper(jackson.getObjectMapper()))
+                                : converter))
+                .build();
+    }
+
+    /**
+     * Copy of the application mapper that tolerates TrackingMore sending
+     * something other than an array where a list is expected: a single
+     * object is read as a one-item list, and an empty object or a bare
+     * value as an empty list.
+     */
+    static ObjectMapper lenientMapper(ObjectMapper mapper) {
+        return mapper.copy().addHandler(new DeserializationProblemHandler() {
+            @Override
+            public Object handleUnexpectedToken(DeserializationContext ctxt, JavaType targetType, JsonToken token,
+                    JsonParser parser, String failureMessage) throws IOException {
+                if (!targetType.isCollectionLikeType()) {
+                    return NOT_HANDLED;
+                }
+
+                List<Object> items = new ArrayList<>();
+                if (token == JsonToken.START_OBJECT) {
+                    JsonNode node = ctxt.readTree(parser);
+                    if (!node.isEmpty()) {
+                        items.add(ctxt.readTreeAsValue(node, targetType.getContentType()));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+                log.debug("Read unexpected {} from TrackingMore as a list of {}", token, items.size());
+                return items;
+            }
+        });
+    }
+
+    /**
+     * Context that stops a call from outliving its request's deadline, or
+     * null (client defaults) outside a request with one.
+     */
+    private HttpContext deadlineContext() {
+        Duration remaining = RequestContext.remaining();
+        if (remaining == null) {
+            return null;
+        }
+
+        // At least 1ms: zero would mean no timeout at all
+        long remainingMillis = Math.max(1, remaining.toMillis());
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(requestConfig(
+                Math.min(poolLeaseTimeout, remainingMillis), Math.min(readTimeout, remainingMillis)));
+        return context;
+    }
+
+    private static RequestConfig requestConfig(long leaseTimeoutMillis, long responseTimeoutMillis) {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(leaseTimeoutMillis, TimeUnit.MILLISECONDS)
+                .setResponseTimeout(responseTimeoutMillis, TimeUnit.MILLISECONDS)
                 .build();
     }
 
@@ -82,4 +237,39 @@ public class TrackingMoreConfig {
             return response;
         };
     }
+
+    /**
+     * Connection manager that records how long callers wait for a connection,
+     * which is the first sign the pool is undersized.
+     */
+    private static class TimedConnectionManager extends PoolingHttpClientConnectionManager {
+
+        private final Timer leaseTimer;
+
+        TimedConnectionManager(Timer leaseTimer) {
+            this.leaseTimer = leaseTimer;
+        }
+
+        @Override
+        public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+            LeaseRequest request = super.lease(id, route, requestTimeout, state);
+            return new LeaseRequest() {
+                @Override
+                public ConnectionEndpoint get(Timeout timeout)
+                        throws InterruptedException, ExecutionException, TimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        return request.get(timeout);
+                    } finally {
+                        leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
 }
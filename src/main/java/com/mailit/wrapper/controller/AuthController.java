@@ -0,0 +1,62 @@
+package com.mailit.wrapper.controller;
+
+import com.mailit.wrapper.config.ApiKeyAuthFilter;
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.dto.response.ErrorResponse;
+import com.mailit.wrapper.model.dto.response.SessionTokenResponse;
+import com.mailit.wrapper.service.SessionTokenService;
+import com.mailit.wrapper.service.SessionTokenService.IssuedToken;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST controller for exchanging API keys for short-lived session tokens.
+ */
+@RestController
+@RequestMapping(AuthController.BASE_PATH)
+@Tag(name = "Authentication", description = "Session token exchange")
+@SecurityRequirement(name = "apiKey")
+public class AuthController {
+    
+    public static final String BASE_PATH = "/api/v1/auth";
+    public static final String TOKEN_PATH = BASE_PATH + "/token";
+    
+    private final SessionTokenService sessionTokenService;
+    
+    public AuthController(SessionTokenService sessionTokenService) {
+        this.sessionTokenService = sessionTokenService;
+    }
+    
+    @PostMapping("/token")
+    @Operation(
+            summary = "Exchange API key for a session token",
+            description = "Returns a short-lived bearer token to send as `Authorization: Bearer <token>` " +
+                    "instead of `X-API-Key`. Tokens are verified without a database lookup. " +
+                    "This endpoint only accepts `X-API-Key`."
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Token issued",
+            content = @Content(schema = @Schema(implementation = SessionTokenResponse.class))
+    )
+    @ApiResponse(
+            responseCode = "401",
+            description = "Unauthorized - invalid or missing API key",
+            content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+    )
+    public ResponseEntity<SessionTokenResponse> exchangeToken(HttpServletRequest httpRequest) {
+        AuthenticatedClient client = (AuthenticatedClient) httpRequest.getAttribute(ApiKeyAuthFilter.CLIENT_ATTRIBUTE);
+        IssuedToken issued = sessionTokenService.issue(client);
+        return ResponseEntity.ok(SessionTokenResponse.bearer(issued.token(), issued.expiresAt()));
+    }
+}
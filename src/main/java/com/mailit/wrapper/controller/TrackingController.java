@@ -1,9 +1,12 @@
 package com.mailit.wrapper.controller;
 
+import com.mailit.wrapper.exception.GlobalExceptionHandler;
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.RateLimitStatus;
 import com.mailit.wrapper.model.dto.request.CreateTrackingRequest;
 import com.mailit.wrapper.model.dto.request.BatchGetRequest;
 import com.mailit.wrapper.model.dto.response.*;
-import com.mailit.wrapper.model.entity.Client;
+import com.mailit.wrapper.service.RateLimitService;
 import com.mailit.wrapper.service.TrackingService;
 
 import java.util.List;
@@ -22,12 +25,19 @@ import jakarta.validation.Valid;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 /**
  * REST controller for tracking operations.
+ * 
+ * <p>Every request is charged against the client's daily quota before any
+ * work is done. The cost reflects upstream usage: local reads cost one token,
+ * single-tracking operations that call TrackingMore cost two, and batch
+ * operations cost one plus one per item. Quota state is returned in the
+ * {@code X-RateLimit-*} headers.</p>
  */
 @RestController
 @RequestMapping("/api/v1/trackings")
@@ -39,10 +49,16 @@ public class TrackingController {
     private static final int DEFAULT_PAGE_SIZE = 20;
     private static final int MAX_PAGE_SIZE = 100;
     
+    private static final int LOCAL_READ_COST = 1;
+    private static final int UPSTREAM_CALL_COST = 2;
+    private static final int BATCH_BASE_COST = 1;
+    
     private final TrackingService trackingService;
+    private final RateLimitService rateLimitService;
     
-    public TrackingController(TrackingService trackingService) {
+    public TrackingController(TrackingService trackingService, RateLimitService rateLimitService) {
         this.trackingService = trackingService;
+        this.rateLimitService = rateLimitService;
     }
     
     @PostMapping
@@ -75,11 +91,14 @@ public class TrackingController {
             @Valid @RequestBody CreateTrackingRequest request,
             HttpServletRequest httpRequest) {
         
-        Client client = getAuthenticatedClient(httpRequest);
+        AuthenticatedClient client = getAuthenticatedClient(httpRequest);
+        rateLimitService.checkBatchSize(client, request.size());
+        RateLimitStatus quota = rateLimitService.checkRateLimit(client, BATCH_BASE_COST + request.size());
+        
         BatchCreateResponse response = trackingService.createTrackings(client, request);
         
         HttpStatus status = response.success() ? HttpStatus.CREATED : HttpStatus.BAD_REQUEST;
-        return ResponseEntity.status(status).body(response);
+        return ResponseEntity.status(status).headers(rateLimitHeaders(quota)).body(response);
     }
 
     @PostMapping("/batch-get")
@@ -96,10 +115,14 @@ public class TrackingController {
             @Valid @RequestBody BatchGetRequest request,
             HttpServletRequest httpRequest) {
         
-        Client client = getAuthenticatedClient(httpRequest);
+        AuthenticatedClient client = getAuthenticatedClient(httpRequest);
+        int items = request.trackingIds().size();
+        rateLimitService.checkBatchSize(client, items);
+        RateLimitStatus quota = rateLimitService.checkRateLimit(client, BATCH_BASE_COST + items);
+        
         List<TrackingDetailResponse> response = trackingService.getBatchTrackingDetails(client, request.trackingIds());
         
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().headers(rateLimitHeaders(quota)).body(response);
     }
     
     @GetMapping
@@ -121,13 +144,14 @@ public class TrackingController {
             @RequestParam(defaultValue = "20") int size,
             HttpServletRequest httpRequest) {
         
-        Client client = getAuthenticatedClient(httpRequest);
+        AuthenticatedClient client = getAuthenticatedClient(httpRequest);
+        RateLimitStatus quota = rateLimitService.checkRateLimit(client, LOCAL_READ_COST);
         
         int pageSize = Math.min(size, MAX_PAGE_SIZE);
         Pageable pageable = PageRequest.of(page, pageSize, Sort.by(Sort.Direction.DESC, "createdAt"));
         
         TrackingListResponse response = trackingService.listTrackings(client, status, pageable);
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().headers(rateLimitHeaders(quota)).body(response);
     }
     
     @GetMapping("/{trackingId}")
@@ -149,9 +173,11 @@ public class TrackingController {
             @PathVariable String trackingId,
             HttpServletRequest httpRequest) {
         
-        Client client = getAuthenticatedClient(httpRequest);
+        AuthenticatedClient client = getAuthenticatedClient(httpRequest);
+        RateLimitStatus quota = rateLimitService.checkRateLimit(client, UPSTREAM_CALL_COST);
+        
         TrackingDetailResponse response = trackingService.getTracking(client, trackingId);
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().headers(rateLimitHeaders(quota)).body(response);
     }
     
     @DeleteMapping("/{trackingId}")
@@ -168,12 +194,24 @@ public class TrackingController {
             @PathVariable String trackingId,
             HttpServletRequest httpRequest) {
         
-        Client client = getAuthenticatedClient(httpRequest);
+        AuthenticatedClient client = getAuthenticatedClient(httpRequest);
+        RateLimitStatus quota = rateLimitService.checkRateLimit(client, UPSTREAM_CALL_COST);
+        
         trackingService.deleteTracking(client, trackingId);
-        return ResponseEntity.noContent().build();
+        return ResponseEntity.noContent().headers(rateLimitHeaders(quota)).build();
+    }
+    
+    private AuthenticatedClient getAuthenticatedClient(HttpServletRequest request) {
+        return (AuthenticatedClient) request.getAttribute(CLIENT_ATTRIBUTE);
     }
     
-    private Client getAuthenticatedClient(HttpServletRequest request) {
-        return (Client) request.getAttribute(CLIENT_ATTRIBUTE);
+    private HttpHeaders rateLimitHeaders(RateLimitStatus quota) {
+        HttpHeaders headers = new HttpHeaders();
+        if (!quota.isUnlimited()) {
+            headers.set(GlobalExceptionHandler.RATE_LIMIT_LIMIT_HEADER, String.valueOf(quota.limit()));
+            headers.set(GlobalExceptionHandler.RATE_LIMIT_REMAINING_HEADER, String.valueOf(quota.remaining()));
+            headers.set(GlobalExceptionHandler.RATE_LIMIT_RESET_HEADER, String.valueOf(quota.resetAt().getEpochSecond()));
+        }
+        return headers;
     }
 }
@@ -0,0 +1,24 @@
+package com.mailit.wrapper.exception;
+
+import java.time.Instant;
+
+/**
+ * Exception thrown when too many failed authentication attempts came from
+ * a source IP or targeted a key prefix.
+ */
+public class AuthenticationThrottledException extends WrapperException {
+    
+    private static final String CODE = "TOO_MANY_AUTH_FAILURES";
+    private static final int HTTP_STATUS = 429;
+
+    private final long retryAfterSeconds;
+
+    public AuthenticationThrottledException(Instant retryAt) {
+        super(CODE, "Too many failed authentication attempts. Retry later.", HTTP_STATUS);
+        this.retryAfterSeconds = Math.max(1, retryAt.getEpochSecond() - Instant.now().getEpochSecond());
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
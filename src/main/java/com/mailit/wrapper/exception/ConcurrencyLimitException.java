@@ -0,0 +1,23 @@
+package com.mailit.wrapper.exception;
+
+/**
+ * Exception thrown when a client already has as many requests in flight
+ * as its plan allows.
+ */
+public class ConcurrencyLimitException extends WrapperException {
+    
+    private static final String CODE = "TOO_MANY_CONCURRENT_REQUESTS";
+    private static final int HTTP_STATUS = 429;
+
+    private final int maxConcurrent;
+
+    public ConcurrencyLimitException(int maxConcurrent) {
+        super(CODE, "Too many concurrent requests. Your plan allows " + maxConcurrent + " in flight.",
+                HTTP_STATUS);
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+}
@@ -0,0 +1,19 @@
+package com.mailit.wrapper.exception;
+
+/**
+ * Exception thrown when a request's deadline passes before the upstream
+ * work it needs has finished.
+ */
+public class DeadlineExceededException extends WrapperException {
+    
+    private static final String CODE = "DEADLINE_EXCEEDED";
+    private static final int HTTP_STATUS = 504;
+
+    public DeadlineExceededException(String message) {
+        super(CODE, message, HTTP_STATUS);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(CODE, message, HTTP_STATUS, cause);
+    }
+}
@@ -29,6 +29,10 @@ import java.util.stream.Collectors;
 public class GlobalExceptionHandler {
 
     private static final String CORRELATION_ID_KEY = "correlationId";
+    
+    public static final String RATE_LIMIT_LIMIT_HEADER = "X-RateLimit-Limit";
+    public static final String RATE_LIMIT_REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String RATE_LIMIT_RESET_HEADER = "X-RateLimit-Reset";
 
     /**
      * Handle authentication failures.
@@ -53,16 +57,19 @@ public class GlobalExceptionHandler {
     public ResponseEntity<ErrorResponse> handleRateLimitException(RateLimitException ex) {
         log.warn("Rate limit exceeded: limit={}, resetAt={}", ex.getLimit(), ex.getResetAt());
         
-        ErrorResponse error = ErrorResponse.rateLimitError(
-                ex.getLimit(),
-                ex.getRemaining(),
-                ex.getResetAt(),
-                getCorrelationId()
+        ErrorResponse error = new ErrorResponse(
+                ex.getCode(),
+                ex.getMessage(),
+                getCorrelationId(),
+                new ErrorResponse.RateLimitDetails(ex.getLimit(), ex.getRemaining(), ex.getResetAt())
         );
         
         return ResponseEntity
                 .status(HttpStatus.TOO_MANY_REQUESTS)
                 .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                .header(RATE_LIMIT_LIMIT_HEADER, String.valueOf(ex.getLimit()))
+                .header(RATE_LIMIT_REMAINING_HEADER, String.valueOf(ex.getRemaining()))
+                .header(RATE_LIMIT_RESET_HEADER, String.valueOf(ex.getResetAt().getEpochSecond()))
                 .body(error);
     }
 
@@ -134,6 +141,42 @@ public class GlobalExceptionHandler {
                 .body(error);
     }
 
+    /**
+     * Handle load shedding (local capacity exhausted).
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleServiceOverloadedException(ServiceOverloadedException ex) {
+        log.warn("Service overloaded: {}", ex.getMessage());
+        
+        ErrorResponse error = new ErrorResponse(
+                ex.getCode(),
+                ex.getMessage(),
+                getCorrelationId(),
+                new RetryDetails(ex.getRetryAfterSeconds())
+        );
+        
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error);
+    }
+
+    /**
+     * Handle requests whose deadline passed while waiting on upstream.
+     */
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<ErrorResponse> handleDeadlineExceededException(DeadlineExceededException ex) {
+        log.warn("Request deadline exceeded: {}", ex.getMessage());
+        
+        ErrorResponse error = new ErrorResponse(
+                ex.getCode(),
+                ex.getMessage(),
+                getCorrelationId()
+        );
+        
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(error);
+    }
+
     /**
      * Handle Bean Validation errors (from @Valid).
      */
@@ -1,5 +1,6 @@
 package com.mailit.wrapper.exception;
 
+import java.time.Duration;
 import java.time.Instant;
 
 /**
@@ -20,7 +21,15 @@ public class RateLimitException extends WrapperException {
         this.limit = limit;
         this.remaining = 0;
         this.resetAt = resetAt;
-        this.retryAfterSeconds = Math.max(0, resetAt.getEpochSecond() - Instant.now().getEpochSecond());
+        this.retryAfterSeconds = retryAfterSeconds(resetAt);
+    }
+
+    public RateLimitException(int limit, int remaining, Instant resetAt) {
+        super(CODE, "Request quota exceeded. Upgrade your plan or retry later.", HTTP_STATUS);
+        this.limit = limit;
+        this.remaining = remaining;
+        this.resetAt = resetAt;
+        this.retryAfterSeconds = retryAfterSeconds(resetAt);
     }
 
     public RateLimitException(String message, int limit, Instant resetAt) {
@@ -28,7 +37,7 @@ public class RateLimitException extends WrapperException {
         this.limit = limit;
         this.remaining = 0;
         this.resetAt = resetAt;
-        this.retryAfterSeconds = Math.max(0, resetAt.getEpochSecond() - Instant.now().getEpochSecond());
+        this.retryAfterSeconds = retryAfterSeconds(resetAt);
     }
 
     public int getLimit() {
@@ -46,4 +55,14 @@ public class RateLimitException extends WrapperException {
     public long getRetryAfterSeconds() {
         return retryAfterSeconds;
     }
+
+    /**
+     * Whole seconds until {@code resetAt}, rounded up and at least 1: the
+     * per-second bandwidth usually refills in under a second, and
+     * {@code Retry-After: 0} would tell clients to retry immediately.
+     */
+    private static long retryAfterSeconds(Instant resetAt) {
+        long millis = Duration.between(Instant.now(), resetAt).toMillis();
+        return Math.max(1, (millis + 999) / 1000);
+    }
 }
@@ -0,0 +1,22 @@
+package com.mailit.wrapper.exception;
+
+/**
+ * Exception thrown when the service sheds load because an internal
+ * work queue is full.
+ */
+public class ServiceOverloadedException extends WrapperException {
+    
+    private static final String CODE = "SERVICE_OVERLOADED";
+    private static final int HTTP_STATUS = 503;
+
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(CODE, message, HTTP_STATUS);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,61 @@
+package com.mailit.wrapper.model;
+
+import com.mailit.wrapper.model.entity.Client;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable snapshot of the client authenticated for the current request.
+ * 
+ * <p>Created by the auth layer from a {@link Client} entity (API key) or from
+ * session token claims, then carried through filters, controllers and services.
+ * Unlike the JPA entity it holds no persistence state, so it is safe to cache
+ * and cheap to pass around. Queries use {@link #id()}.</p>
+ * 
+ * @param id the client ID
+ * @param name the client name (null when authenticated by session token)
+ * @param apiKeyPrefix the API key prefix, used for log correlation
+ * @param plan the rate limit plan
+ * @param expiresAt optional API key expiration
+ */
+public record AuthenticatedClient(
+        Long id,
+        String name,
+        String apiKeyPrefix,
+        RateLimitPlan plan,
+        LocalDateTime expiresAt
+) {
+    /**
+     * Snapshot a client entity.
+     */
+    public static AuthenticatedClient from(Client client) {
+        return new AuthenticatedClient(
+                client.getId(),
+                client.getName(),
+                client.getApiKeyPrefix(),
+                client.getPlan(),
+                client.getExpiresAt()
+        );
+    }
+
+    /**
+     * Check whether the API key has expired.
+     */
+    public boolean isExpired(LocalDateTime now) {
+        return expiresAt != null && expiresAt.isBefore(now);
+    }
+
+    /**
+     * Maximum requests per day for this client's plan, or -1 if unlimited.
+     */
+    public int requestsPerDay() {
+        return plan.getRequestsPerDay();
+    }
+
+    /**
+     * Maximum trackings per batch request for this client's plan.
+     */
+    public int trackingsPerBatch() {
+        return plan.getTrackingsPerBatch();
+    }
+}
@@ -3,41 +3,46 @@ package com.mailit.wrapper.model;
 /**
  * Rate limit plans defining client quotas.
  * 
- * <p>Each plan specifies daily request limits and maximum trackings
- * per batch request. Enterprise plan has unlimited requests.</p>
+ * <p>Each plan specifies daily request limits, maximum trackings
+ * per batch request, maximum requests in flight and its weight when
+ * competing for the shared upstream quota. Enterprise plan has unlimited requests.</p>
  */
 public enum RateLimitPlan {
     
     /**
      * Free tier - limited for evaluation.
-     * 100 requests/day, 10 trackings/batch
+     * 100 requests/day, 10 trackings/batch, 2 in flight, upstream weight 1
      */
-    FREE(100, 10),
+    FREE(100, 10, 2, 1),
     
     /**
      * Starter tier - small businesses.
-     * 1,000 requests/day, 40 trackings/batch
+     * 1,000 requests/day, 40 trackings/batch, 5 in flight, upstream weight 2
      */
-    STARTER(1_000, 40),
+    STARTER(1_000, 40, 5, 2),
     
     /**
      * Pro tier - medium businesses.
-     * 10,000 requests/day, 40 trackings/batch
+     * 10,000 requests/day, 40 trackings/batch, 20 in flight, upstream weight 4
      */
-    PRO(10_000, 40),
+    PRO(10_000, 40, 20, 4),
     
     /**
      * Enterprise tier - unlimited.
-     * Unlimited requests/day, 40 trackings/batch
+     * Unlimited requests/day, 40 trackings/batch, 50 in flight, upstream weight 8
      */
-    ENTERPRISE(-1, 40);
+    ENTERPRISE(-1, 40, 50, 8);
 
     private final int requestsPerDay;
     private final int trackingsPerBatch;
+    private final int maxConcurrent;
+    private final int upstreamWeight;
 
-    RateLimitPlan(int requestsPerDay, int trackingsPerBatch) {
+    RateLimitPlan(int requestsPerDay, int trackingsPerBatch, int maxConcurrent, int upstreamWeight) {
         this.requestsPerDay = requestsPerDay;
         this.trackingsPerBatch = trackingsPerBatch;
+        this.maxConcurrent = maxConcurrent;
+        this.upstreamWeight = upstreamWeight;
     }
 
     /**
@@ -58,6 +63,26 @@ public enum RateLimitPlan {
         return trackingsPerBatch;
     }
 
+    /**
+     * Returns the maximum number of requests a client may have in flight.
+     * 
+     * @return max concurrent requests
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Returns this plan's share of the upstream quota when clients compete.
+     * A client with weight 8 is served eight times as often as one with
+     * weight 1 while both have calls waiting.
+     * 
+     * @return relative upstream weight
+     */
+    public int getUpstreamWeight() {
+        return upstreamWeight;
+    }
+
     /**
      * Checks if this plan has unlimited requests.
      * 
@@ -0,0 +1,31 @@
+package com.mailit.wrapper.model;
+
+import java.time.Instant;
+
+/**
+ * Quota state of a client after a rate limit check.
+ * 
+ * @param limit the plan's request quota, or -1 if unlimited
+ * @param remaining tokens left in the quota, or -1 if unlimited
+ * @param resetAt when the quota is fully replenished, or null if unlimited
+ */
+public record RateLimitStatus(long limit, long remaining, Instant resetAt) {
+
+    private static final RateLimitStatus UNLIMITED = new RateLimitStatus(-1, -1, null);
+
+    /**
+     * Status for plans without a quota.
+     */
+    public static RateLimitStatus unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Checks if the client has no quota.
+     * 
+     * @return true if unlimited
+     */
+    public boolean isUnlimited() {
+        return limit < 0;
+    }
+}
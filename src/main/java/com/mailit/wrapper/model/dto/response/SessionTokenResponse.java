@@ -0,0 +1,26 @@
+package com.mailit.wrapper.model.dto.response;
+
+import java.time.Instant;
+
+/**
+ * Response for the API key to session token exchange.
+ * 
+ * @param accessToken the signed bearer token (e.g., "st_...")
+ * @param tokenType always "Bearer"
+ * @param expiresIn seconds until the token expires
+ * @param expiresAt token expiration timestamp
+ */
+public record SessionTokenResponse(
+        String accessToken,
+        String tokenType,
+        long expiresIn,
+        Instant expiresAt
+) {
+    /**
+     * Create a bearer token response.
+     */
+    public static SessionTokenResponse bearer(String accessToken, Instant expiresAt) {
+        long expiresIn = Math.max(0, expiresAt.getEpochSecond() - Instant.now().getEpochSecond());
+        return new SessionTokenResponse(accessToken, "Bearer", expiresIn, expiresAt);
+    }
+}
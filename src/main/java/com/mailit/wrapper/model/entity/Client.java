@@ -12,13 +12,13 @@ import java.time.LocalDateTime;
  * JPA entity representing an API client.
  * 
  * <p>Clients authenticate via API keys stored using Stripe-style pattern:
- * a plain-text prefix for log correlation and a bcrypt hash for secure
- * authentication.</p>
+ * a plain-text prefix for log correlation and a versioned hash (peppered
+ * HMAC-SHA256, or legacy bcrypt) for secure authentication.</p>
  * 
  * <p>Example API key: {@code sk_live_ab12cd34ef56gh78}</p>
  * <ul>
  *   <li>Prefix stored: {@code sk_live_ab12cd}</li>
- *   <li>Hash stored: bcrypt hash of full key</li>
+ *   <li>Hash stored: {@code $hmac-sha256$...} (or legacy bcrypt) of full key</li>
  * </ul>
  */
 @Entity
@@ -51,10 +51,10 @@ public class Client {
     private String apiKeyPrefix;
 
     /**
-     * bcrypt hash of the full API key.
+     * Versioned hash of the full API key: {@code $hmac-sha256$...} or legacy bcrypt.
      * Used for secure authentication without storing plaintext key.
      */
-    @Column(name = "api_key_hash", nullable = false, unique = true, length = 60)
+    @Column(name = "api_key_hash", nullable = false, unique = true, length = 128)
     private String apiKeyHash;
 
     /**
@@ -80,6 +80,14 @@ public class Client {
     @Column(name = "expires_at")
     private LocalDateTime expiresAt;
 
+    /**
+     * Session token revocation epoch.
+     * Tokens carry the epoch they were issued under and are rejected once it changes.
+     */
+    @Column(name = "token_epoch", nullable = false)
+    @Builder.Default
+    private long tokenEpoch = 0;
+
     /**
      * Timestamp when the client was created.
      */
@@ -94,6 +102,13 @@ public class Client {
     @Builder.Default
     private LocalDateTime updatedAt = LocalDateTime.now();
 
+    /**
+     * Invalidates all outstanding session tokens by bumping the revocation epoch.
+     */
+    public void revokeSessionTokens() {
+        this.tokenEpoch++;
+    }
+
     /**
      * Updates the updatedAt timestamp before persist/update.
      */
@@ -7,17 +7,21 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.List;
-
 /**
  * Response from TrackingMore API.
+ * 
+ * <p>Parameterized by the shape of {@code data} so the body is decoded
+ * straight into typed objects in one pass, e.g.
+ * {@code TrackingMoreResponse<List<TrackingMoreTrackingItem>>}.</p>
+ * 
+ * @param <T> type of the {@code data} field for the endpoint
  */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
-public class TrackingMoreResponse {
+public class TrackingMoreResponse<T> {
     
     /**
      * Response metadata.
@@ -27,7 +31,7 @@ public class TrackingMoreResponse {
     /**
      * Response data (structure varies by endpoint).
      */
-    private Object data;
+    private T data;
     
     @Data
     @NoArgsConstructor
@@ -2,7 +2,11 @@ package com.mailit.wrapper.repository;
 
 import com.mailit.wrapper.model.entity.Client;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -17,9 +21,9 @@ public interface ClientRepository extends JpaRepository<Client, Long> {
 
     /**
      * Find a client by their API key hash.
-     * Used for authentication - compare bcrypt hash of incoming key.
+     * Only meaningful for deterministic (HMAC) hashes.
      * 
-     * @param apiKeyHash the bcrypt hash of the API key
+     * @param apiKeyHash the hash of the API key
      * @return the client if found
      */
     Optional<Client> findByApiKeyHash(String apiKeyHash);
@@ -37,11 +41,37 @@ public interface ClientRepository extends JpaRepository<Client, Long> {
      * Check if a client exists with the given API key hash.
      * Fast existence check for authentication.
      * 
-     * @param apiKeyHash the bcrypt hash of the API key
+     * @param apiKeyHash the hash of the API key
      * @return true if client exists
      */
     boolean existsByApiKeyHash(String apiKeyHash);
 
+    /**
+     * Replace a client's API key hash if it still equals the expected value.
+     * Used to upgrade legacy hashes without racing key rotation or revocation.
+     * 
+     * @param id the client's ID
+     * @param oldHash the hash the caller verified against
+     * @param newHash the replacement hash
+     * @return number of rows updated (0 if the hash changed meanwhile)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Client c SET c.apiKeyHash = :newHash WHERE c.id = :id AND c.apiKeyHash = :oldHash")
+    int updateApiKeyHash(
+            @Param("id") Long id,
+            @Param("oldHash") String oldHash,
+            @Param("newHash") String newHash);
+
+    /**
+     * Get a client's session token revocation epoch without loading the entity.
+     * 
+     * @param id the client's ID
+     * @return the current epoch if the client exists
+     */
+    @Query("SELECT c.tokenEpoch FROM Client c WHERE c.id = :id")
+    Optional<Long> findTokenEpochById(@Param("id") Long id);
+
     /**
      * Find a client by name.
      * 
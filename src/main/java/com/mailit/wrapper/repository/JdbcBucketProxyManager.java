@@ -0,0 +1,94 @@
+package com.mailit.wrapper.repository;
+
+import io.github.bucket4j.distributed.proxy.ClientSideConfig;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AbstractCompareAndSwapBasedProxyManager;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.AsyncCompareAndSwapOperation;
+import io.github.bucket4j.distributed.proxy.generic.compare_and_swap.CompareAndSwapOperation;
+import io.github.bucket4j.distributed.remote.RemoteBucketState;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bucket4j proxy manager that keeps bucket state in the {@code rate_limit_buckets} table.
+ * 
+ * <p>Each consumption reads the serialized state, applies the command locally
+ * and writes it back only if the row still holds the bytes that were read.
+ * A lost race makes Bucket4j retry with the fresh state. This uses plain
+ * {@code SELECT}/{@code INSERT}/{@code UPDATE}, so it runs on both H2 and
+ * PostgreSQL without vendor-specific locking.</p>
+ */
+public class JdbcBucketProxyManager extends AbstractCompareAndSwapBasedProxyManager<Long> {
+
+    private static final String SELECT_STATE =
+            "SELECT state FROM rate_limit_buckets WHERE bucket_key = ?";
+    private static final String INSERT_STATE =
+            "INSERT INTO rate_limit_buckets (bucket_key, state, updated_at) VALUES (?, ?, CURRENT_TIMESTAMP)";
+    private static final String UPDATE_STATE =
+            "UPDATE rate_limit_buckets SET state = ?, updated_at = CURRENT_TIMESTAMP WHERE bucket_key = ? AND state = ?";
+    private static final String DELETE_STATE =
+            "DELETE FROM rate_limit_buckets WHERE bucket_key = ?";
+    private static final String DELETE_ALL =
+            "DELETE FROM rate_limit_buckets";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcBucketProxyManager(JdbcTemplate jdbcTemplate) {
+        super(ClientSideConfig.getDefault());
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    protected CompareAndSwapOperation beginCompareAndSwapOperation(Long key) {
+        return new CompareAndSwapOperation() {
+            @Override
+            public Optional<byte[]> getStateData() {
+                List<byte[]> rows = jdbcTemplate.query(SELECT_STATE, (rs, rowNum) -> rs.getBytes(1), key);
+                return rows.stream().findFirst();
+            }
+
+            @Override
+            public boolean compareAndSwap(byte[] originalData, byte[] newData, RemoteBucketState newState) {
+                if (originalData == null) {
+                    try {
+                        return jdbcTemplate.update(INSERT_STATE, key, newData) == 1;
+                    } catch (DuplicateKeyException e) {
+                        // Another instance created the bucket first
+                        return false;
+                    }
+                }
+                return jdbcTemplate.update(UPDATE_STATE, newData, key, originalData) == 1;
+            }
+        };
+    }
+
+    @Override
+    protected AsyncCompareAndSwapOperation beginAsyncCompareAndSwapOperation(Long key) {
+        throw new UnsupportedOperationException("Asynchronous mode is not supported by JDBC buckets");
+    }
+
+    @Override
+    public void removeProxy(Long key) {
+        jdbcTemplate.update(DELETE_STATE, key);
+    }
+
+    @Override
+    protected CompletableFuture<Void> removeAsync(Long key) {
+        throw new UnsupportedOperationException("Asynchronous mode is not supported by JDBC buckets");
+    }
+
+    @Override
+    public boolean isAsyncModeSupported() {
+        return false;
+    }
+
+    /**
+     * Remove every stored bucket.
+     */
+    public void removeAll() {
+        jdbcTemplate.update(DELETE_ALL);
+    }
+}
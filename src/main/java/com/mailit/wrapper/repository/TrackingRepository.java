@@ -1,7 +1,6 @@
 package com.mailit.wrapper.repository;
 
 import com.mailit.wrapper.model.WrapperStatus;
-import com.mailit.wrapper.model.entity.Client;
 import com.mailit.wrapper.model.entity.Tracking;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -50,44 +49,14 @@ public interface TrackingRepository extends JpaRepository<Tracking, Long> {
      */
     Page<Tracking> findByClientId(Long clientId, Pageable pageable);
     
-    /**
-     * Find all trackings for a client entity.
-     * 
-     * @param client the client entity
-     * @param pageable pagination parameters
-     * @return page of trackings
-     */
-    Page<Tracking> findByClient(Client client, Pageable pageable);
-
     /**
      * Find trackings by client and a list of tracking IDs.
      * 
-     * @param client the client entity
+     * @param clientId the client's ID
      * @param trackingIds list of tracking IDs
      * @return list of trackings
      */
-    List<Tracking> findByClientAndTrackingIdIn(Client client, Collection<String> trackingIds);
-    
-    /**
-     * Find trackings by client and status.
-     * 
-     * @param client the client entity
-     * @param status the tracking status
-     * @param pageable pagination parameters
-     * @return page of matching trackings
-     */
-    Page<Tracking> findByClientAndStatus(Client client, WrapperStatus status, Pageable pageable);
-    
-    /**
-     * Check if a tracking number already exists for a client.
-     * 
-     * @param client the client entity
-     * @param trackingNumber the tracking number
-     * @param courierCode the courier code
-     * @return true if already exists
-     */
-    boolean existsByClientAndTrackingNumberAndCourierCode(
-            Client client, String trackingNumber, String courierCode);
+    List<Tracking> findByClientIdAndTrackingIdIn(Long clientId, Collection<String> trackingIds);
 
     /**
      * Find trackings by client and status.
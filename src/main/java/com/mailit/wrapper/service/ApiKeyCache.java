@@ -0,0 +1,190 @@
+package com.mailit.wrapper.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mailit.wrapper.model.AuthenticatedClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-expiring cache of verified API keys.
+ *
+ * <p>Entries are keyed by a SHA-256 digest of the raw key (the key itself is
+ * never retained) and hold an immutable snapshot of the client taken when the
+ * key was verified. A hit skips both the prefix lookup and the bcrypt
+ * comparison in {@link AuthService}.</p>
+ *
+ * <p>Keys that recently failed verification are remembered separately in a
+ * bounded negative cache, so replaying a bad key costs one digest instead of
+ * a database lookup and a bcrypt comparison.</p>
+ *
+ * <p>Admin operations that change what a key grants must call
+ * {@link #invalidateClient(Long)} so revocation takes effect immediately.
+ * A generation counter guards against a verification that started before an
+ * invalidation re-populating the cache with stale data afterwards.</p>
+ */
+@Slf4j
+@Component
+public class ApiKeyCache {
+
+    private final Cache<String, AuthenticatedClient> verifiedKeys;
+    private final Cache<String, Boolean> rejectedKeys;
+
+    /**
+     * Bumped on every invalidation. Puts carrying an older generation are dropped.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public ApiKeyCache(
+            @Value("${auth.api-key-cache.max-size:10000}") long maxSize,
+            @Value("${auth.api-key-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${auth.api-key-cache.negative-max-size:100000}") long negativeMaxSize,
+            @Value("${auth.api-key-cache.negative-ttl-seconds:60}") long negativeTtlSeconds) {
+        log.info("Configuring API key cache: maxSize={}, ttl={}s, negativeMaxSize={}, negativeTtl={}s",
+                maxSize, ttlSeconds, negativeMaxSize, negativeTtlSeconds);
+
+        this.verifiedKeys = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        this.rejectedKeys = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(negativeTtlSeconds))
+                .build();
+    }
+
+    /**
+     * Compute the cache key for a raw API key.
+     *
+     * @param apiKey the raw API key
+     * @return hex-encoded SHA-256 digest of the key
+     */
+    public String digest(String apiKey) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(apiKey.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Look up a previously verified key.
+     *
+     * @param digest the key digest from {@link #digest(String)}
+     * @return the client snapshot, or empty on a miss
+     */
+    public Optional<AuthenticatedClient> get(String digest) {
+        return Optional.ofNullable(verifiedKeys.getIfPresent(digest));
+    }
+
+    /**
+     * Check whether a key recently failed verification.
+     *
+     * @param digest the key digest
+     * @return true if the key is in the negative cache
+     */
+    public boolean isRejected(String digest) {
+        return rejectedKeys.getIfPresent(digest) != null;
+    }
+
+    /**
+     * Remember that a key failed verification.
+     *
+     * @param digest the key digest
+     */
+    public void markRejected(String digest) {
+        rejectedKeys.put(digest, Boolean.TRUE);
+    }
+
+    /**
+     * Current invalidation generation. Read this before loading the client
+     * from the database and pass it to {@link #put}.
+     *
+     * @return the current generation
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Cache a verified key, unless an invalidation happened since
+     * {@code generationAtLookup} was read.
+     *
+     * @param digest the key digest
+     * @param client the verified client snapshot
+     * @param generationAtLookup generation read before the database lookup
+     */
+    public void put(String digest, AuthenticatedClient client, long generationAtLookup) {
+        if (generation.get() != generationAtLookup) {
+            log.debug("Skipping API key cache put for client {}: invalidated during lookup", client.id());
+            return;
+        }
+
+        verifiedKeys.put(digest, client);
+
+        // An invalidation may have slipped in between the check and the put
+        if (generation.get() != generationAtLookup) {
+            verifiedKeys.invalidate(digest);
+        }
+    }
+
+    /**
+     * Remove a single cached key.
+     *
+     * @param digest the key digest
+     */
+    public void invalidate(String digest) {
+        verifiedKeys.invalidate(digest);
+    }
+
+    /**
+     * Remove every cached key belonging to a client.
+     *
+     * <p>Runs immediately and, when called inside a transaction, again after
+     * commit so that a concurrent request cannot cache the pre-commit state.
+     * The negative cache is cleared entirely, since a reactivated client's
+     * key may have been rejected while it was suspended.</p>
+     *
+     * @param clientId the client ID
+     */
+    public void invalidateClient(Long clientId) {
+        evictClient(clientId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictClient(clientId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Remove all cached keys.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        verifiedKeys.invalidateAll();
+        rejectedKeys.invalidateAll();
+    }
+
+    private void evictClient(Long clientId) {
+        generation.incrementAndGet();
+        verifiedKeys.asMap().values().removeIf(client -> client.id().equals(clientId));
+        rejectedKeys.invalidateAll();
+        log.debug("Invalidated cached API keys for client {}", clientId);
+    }
+}
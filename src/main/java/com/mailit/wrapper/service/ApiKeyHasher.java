@@ -0,0 +1,141 @@
+package com.mailit.wrapper.service;
+
+import com.mailit.wrapper.util.Secrets;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Hashes and verifies API keys using a versioned storage format.
+ *
+ * <p>Two schemes coexist in {@code clients.api_key_hash}:</p>
+ * <ul>
+ *   <li>{@code $hmac-sha256$<base64url>} - HMAC-SHA256 of the key under a
+ *       server-side pepper. Verifies in microseconds; sufficient because API
+ *       keys are high-entropy random secrets, not user-chosen passwords.</li>
+ *   <li>{@code $2a$12$...} - legacy bcrypt (cost 12). Still verified, and
+ *       upgraded to HMAC on the next successful authentication.</li>
+ * </ul>
+ *
+ * <p>If no pepper is configured, new hashes fall back to bcrypt and no
+ * upgrades are performed. A placeholder pepper or one shorter than 32 bytes
+ * fails startup, since the pepper can never change once keys use it.</p>
+ */
+@Slf4j
+@Component
+public class ApiKeyHasher {
+
+    static final String HMAC_PREFIX = "$hmac-sha256$";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int BCRYPT_COST = 12;
+
+    private final byte[] pepper;
+    private final BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(BCRYPT_COST);
+    private final ThreadLocal<Mac> mac;
+
+    public ApiKeyHasher(@Value("${auth.api-key.pepper:}") String pepper) {
+        Secrets.requireStrong("auth.api-key.pepper", pepper);
+        this.pepper = pepper.getBytes(StandardCharsets.UTF_8);
+        this.mac = ThreadLocal.withInitial(this::newMac);
+
+        if (pepper.isBlank()) {
+            log.warn("No API key pepper configured (auth.api-key.pepper); "
+                    + "falling back to bcrypt for API key hashes");
+        }
+    }
+
+    /**
+     * Hash an API key for storage using the preferred scheme.
+     *
+     * @param apiKey the raw API key
+     * @return the versioned hash
+     */
+    public String hash(String apiKey) {
+        if (!isPepperConfigured()) {
+            return BCrypt.hashpw(apiKey, BCrypt.gensalt(BCRYPT_COST));
+        }
+        return HMAC_PREFIX + hmac(apiKey);
+    }
+
+    /**
+     * Verify an API key against a stored hash of either scheme.
+     *
+     * @param apiKey the raw API key
+     * @param storedHash the stored hash, may be null for revoked keys
+     * @return true if the key matches
+     */
+    public boolean matches(String apiKey, String storedHash) {
+        if (storedHash == null) {
+            return false;
+        }
+
+        if (storedHash.startsWith(HMAC_PREFIX)) {
+            if (!isPepperConfigured()) {
+                log.error("Stored API key hash uses HMAC but no pepper is configured");
+                return false;
+            }
+            byte[] expected = storedHash.substring(HMAC_PREFIX.length()).getBytes(StandardCharsets.US_ASCII);
+            byte[] actual = hmac(apiKey).getBytes(StandardCharsets.US_ASCII);
+            return MessageDigest.isEqual(expected, actual);
+        }
+
+        if (isBcrypt(storedHash)) {
+            return bcrypt.matches(apiKey, storedHash);
+        }
+
+        log.warn("Unrecognized API key hash format");
+        return false;
+    }
+
+    /**
+     * Check whether a stored hash should be re-hashed with the preferred scheme.
+     *
+     * @param storedHash the stored hash
+     * @return true if the hash is legacy bcrypt and HMAC is available
+     */
+    public boolean needsUpgrade(String storedHash) {
+        return isPepperConfigured() && storedHash != null && !storedHash.startsWith(HMAC_PREFIX);
+    }
+
+    /**
+     * Check whether verifying against a stored hash is CPU-expensive.
+     *
+     * @param storedHash the stored hash
+     * @return true for bcrypt hashes
+     */
+    public boolean isSlow(String storedHash) {
+        return storedHash != null && isBcrypt(storedHash);
+    }
+
+    private boolean isPepperConfigured() {
+        return pepper.length > 0;
+    }
+
+    private boolean isBcrypt(String storedHash) {
+        return storedHash.startsWith("$2a$") || storedHash.startsWith("$2b$") || storedHash.startsWith("$2y$");
+    }
+
+    private String hmac(String apiKey) {
+        byte[] digest = mac.get().doFinal(apiKey.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+            instance.init(new SecretKeySpec(pepper, HMAC_ALGORITHM));
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + HMAC_ALGORITHM, e);
+        }
+    }
+}
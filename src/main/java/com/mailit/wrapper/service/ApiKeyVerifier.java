@@ -0,0 +1,153 @@
+package com.mailit.wrapper.service;
+
+import com.mailit.wrapper.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies API keys against stored hashes, keeping slow hashes off request threads.
+ *
+ * <p>HMAC hashes are compared inline. Legacy bcrypt hashes are verified on a
+ * small dedicated pool with a bounded queue, so a cold-cache burst cannot tie
+ * up every servlet worker hashing. When the queue is full the request is shed
+ * with a {@link ServiceOverloadedException} instead of waiting.</p>
+ *
+ * <p>Concurrent verifications of the same key against the same stored hash
+ * share one computation.</p>
+ */
+@Slf4j
+@Component
+public class ApiKeyVerifier {
+
+    private final ApiKeyHasher apiKeyHasher;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final long retryAfterSeconds;
+
+    /**
+     * Key digest and stored hash to the in-flight verification.
+     */
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter coalesced;
+    private final Counter shed;
+
+    public ApiKeyVerifier(
+            ApiKeyHasher apiKeyHasher,
+            MeterRegistry meterRegistry,
+            @Value("${auth.verification.threads:0}") int threads,
+            @Value("${auth.verification.queue-capacity:64}") int queueCapacity,
+            @Value("${auth.verification.timeout-millis:2000}") long timeoutMillis,
+            @Value("${auth.verification.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.apiKeyHasher = apiKeyHasher;
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        // Hashing is CPU-bound; more threads than cores only adds contention
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "api-key-verify-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        log.info("Configuring API key verification pool: threads={}, queueCapacity={}, timeout={}ms",
+                poolSize, queueCapacity, timeoutMillis);
+
+        this.coalesced = meterRegistry.counter("auth.verification.coalesced");
+        this.shed = meterRegistry.counter("auth.verification.shed");
+        meterRegistry.gauge("auth.verification.queue.size", executor, e -> e.getQueue().size());
+        meterRegistry.gauge("auth.verification.active", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    /**
+     * Verify an API key against a stored hash.
+     *
+     * @param digest the key digest from {@link ApiKeyCache#digest(String)}
+     * @param apiKey the raw API key
+     * @param storedHash the stored hash
+     * @return true if the key matches
+     * @throws ServiceOverloadedException if the verification pool is saturated
+     */
+    public boolean matches(String digest, String apiKey, String storedHash) {
+        if (!apiKeyHasher.isSlow(storedHash)) {
+            return apiKeyHasher.matches(apiKey, storedHash);
+        }
+
+        String flightKey = digest + "|" + storedHash;
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(flightKey, created);
+
+        CompletableFuture<Boolean> future;
+        if (existing != null) {
+            coalesced.increment();
+            future = existing;
+        } else {
+            future = created;
+            try {
+                executor.execute(() -> {
+                    try {
+                        created.complete(apiKeyHasher.matches(apiKey, storedHash));
+                    } catch (Throwable t) {
+                        created.completeExceptionally(t);
+                    } finally {
+                        inFlight.remove(flightKey, created);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(flightKey, created);
+                created.completeExceptionally(e);
+                throw overloaded();
+            }
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("API key verification timed out after {}ms", timeoutMillis);
+            throw overloaded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw overloaded();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                // The leader was shed; followers are shed with it
+                throw overloaded();
+            }
+            log.error("API key verification failed", e.getCause());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private ServiceOverloadedException overloaded() {
+        shed.increment();
+        return new ServiceOverloadedException(
+                "Authentication is temporarily overloaded. Please retry shortly.", retryAfterSeconds);
+    }
+}
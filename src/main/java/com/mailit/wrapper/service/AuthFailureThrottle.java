@@ -0,0 +1,122 @@
+package com.mailit.wrapper.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Token buckets that throttle failed authentication attempts.
+ *
+ * <p>Each failed attempt consumes a token from the bucket of the source IP
+ * and of the presented key prefix. Once either bucket is empty, further
+ * uncached attempts from that IP or against that prefix are rejected before
+ * any database lookup or bcrypt comparison, until the bucket refills.</p>
+ *
+ * <p>Buckets live in bounded, idle-expiring caches so a spray of random IPs
+ * or prefixes cannot grow memory without limit.</p>
+ */
+@Slf4j
+@Component
+public class AuthFailureThrottle {
+
+    private final Cache<String, Bucket> ipBuckets;
+    private final Cache<String, Bucket> prefixBuckets;
+    private final Bandwidth ipBandwidth;
+    private final Bandwidth prefixBandwidth;
+
+    public AuthFailureThrottle(
+            MeterRegistry meterRegistry,
+            @Value("${auth.failure-throttle.max-tracked:50000}") long maxTracked,
+            @Value("${auth.failure-throttle.per-ip.capacity:20}") long ipCapacity,
+            @Value("${auth.failure-throttle.per-ip.refill-per-minute:10}") long ipRefillPerMinute,
+            @Value("${auth.failure-throttle.per-prefix.capacity:10}") long prefixCapacity,
+            @Value("${auth.failure-throttle.per-prefix.refill-per-minute:5}") long prefixRefillPerMinute) {
+        log.info("Configuring auth failure throttle: perIp={}+{}/min, perPrefix={}+{}/min",
+                ipCapacity, ipRefillPerMinute, prefixCapacity, prefixRefillPerMinute);
+
+        this.ipBandwidth = Bandwidth.classic(ipCapacity,
+                Refill.greedy(ipRefillPerMinute, Duration.ofMinutes(1)));
+        this.prefixBandwidth = Bandwidth.classic(prefixCapacity,
+                Refill.greedy(prefixRefillPerMinute, Duration.ofMinutes(1)));
+
+        // A bucket idle for this long has refilled completely and can be dropped
+        this.ipBuckets = Caffeine.newBuilder()
+                .maximumSize(maxTracked)
+                .expireAfterAccess(timeToRefill(ipCapacity, ipRefillPerMinute))
+                .build();
+        this.prefixBuckets = Caffeine.newBuilder()
+                .maximumSize(maxTracked)
+                .expireAfterAccess(timeToRefill(prefixCapacity, prefixRefillPerMinute))
+                .build();
+
+        meterRegistry.gaugeMapSize("auth.failure.throttle.tracked", Tags.of("key", "ip"), ipBuckets.asMap());
+        meterRegistry.gaugeMapSize("auth.failure.throttle.tracked", Tags.of("key", "prefix"), prefixBuckets.asMap());
+    }
+
+    /**
+     * Check whether the source IP has exhausted its failure budget.
+     *
+     * @param sourceIp the client address, may be null
+     * @return when the next attempt is allowed, or null if not throttled
+     */
+    public Instant ipThrottledUntil(String sourceIp) {
+        return throttledUntil(ipBuckets, sourceIp);
+    }
+
+    /**
+     * Check whether the key prefix has exhausted its failure budget.
+     *
+     * @param prefix the presented key prefix, may be null
+     * @return when the next attempt is allowed, or null if not throttled
+     */
+    public Instant prefixThrottledUntil(String prefix) {
+        return throttledUntil(prefixBuckets, prefix);
+    }
+
+    /**
+     * Record a failed authentication attempt.
+     *
+     * @param sourceIp the client address, may be null
+     * @param prefix the presented key prefix, may be null
+     */
+    public void recordFailure(String sourceIp, String prefix) {
+        if (sourceIp != null) {
+            ipBuckets.get(sourceIp, ip -> newBucket(ipBandwidth)).tryConsume(1);
+        }
+        if (prefix != null) {
+            prefixBuckets.get(prefix, p -> newBucket(prefixBandwidth)).tryConsume(1);
+        }
+    }
+
+    private Instant throttledUntil(Cache<String, Bucket> buckets, String key) {
+        if (key == null) {
+            return null;
+        }
+
+        Bucket bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            return null;
+        }
+
+        long nanosToWait = bucket.estimateAbilityToConsume(1).getNanosToWaitForRefill();
+        return nanosToWait > 0 ? Instant.now().plusNanos(nanosToWait) : null;
+    }
+
+    private static Bucket newBucket(Bandwidth bandwidth) {
+        return Bucket.builder().addLimit(bandwidth).build();
+    }
+
+    private static Duration timeToRefill(long capacity, long refillPerMinute) {
+        return Duration.ofSeconds(Math.max(60, (capacity * 60) / Math.max(1, refillPerMinute)));
+    }
+}
@@ -1,20 +1,27 @@
 package com.mailit.wrapper.service;
 
+import com.mailit.wrapper.exception.AuthenticationThrottledException;
+import com.mailit.wrapper.exception.ServiceOverloadedException;
+import com.mailit.wrapper.model.AuthenticatedClient;
 import com.mailit.wrapper.model.entity.Client;
 import com.mailit.wrapper.repository.ClientRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.Optional;
 
 /**
  * Service for API key authentication.
  * 
- * <p>Uses bcrypt to securely compare incoming API keys against
- * stored hashes without exposing the original key.</p>
+ * <p>Compares incoming API keys against stored hashes via {@link ApiKeyHasher},
+ * which understands both the peppered HMAC scheme and legacy bcrypt hashes.
+ * Legacy hashes are upgraded on the next successful authentication. Successful verifications
+ * are remembered in {@link ApiKeyCache} so repeat requests with the same key
+ * skip the database lookup and the bcrypt comparison. Uncached bcrypt
+ * comparisons run on the bounded pool in {@link ApiKeyVerifier}.</p>
  */
 @Slf4j
 @Service
@@ -22,35 +29,88 @@ import java.util.Optional;
 public class AuthService {
 
     private final ClientRepository clientRepository;
-    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final ApiKeyCache apiKeyCache;
+    private final ApiKeyHasher apiKeyHasher;
+    private final ApiKeyVerifier apiKeyVerifier;
+    private final AuthFailureThrottle authFailureThrottle;
+    private final MeterRegistry meterRegistry;
 
     /**
      * Validate an API key and return the associated client.
      * 
-     * <p>Since we store bcrypt hashes, we cannot look up by hash directly.
+     * <p>Since legacy bcrypt hashes are salted, we cannot look up by hash directly.
      * Instead, we extract the prefix, find potential matches, and verify
      * the full key against each hash.</p>
      * 
+     * <p>Verified keys are served from {@link ApiKeyCache} until they expire
+     * or the client is changed by an admin operation. Keys that recently failed
+     * are rejected from the negative cache, and sources or prefixes with too many
+     * recent failures are throttled by {@link AuthFailureThrottle} - both before
+     * any database lookup or hash comparison.</p>
+     * 
      * @param apiKey the raw API key from the request
-     * @return the authenticated client, or empty if invalid
+     * @param sourceIp the client address, used for failure throttling (may be null)
+     * @return snapshot of the authenticated client, or empty if invalid
+     * @throws AuthenticationThrottledException if the IP or prefix is throttled
+     * @throws ServiceOverloadedException if slow hash verification is saturated
      */
-    public Optional<Client> validateApiKey(String apiKey) {
+    public Optional<AuthenticatedClient> validateApiKey(String apiKey, String sourceIp) {
         if (apiKey == null || apiKey.isBlank()) {
             return Optional.empty();
         }
 
+        String digest = apiKeyCache.digest(apiKey);
+        Optional<AuthenticatedClient> cached = apiKeyCache.get(digest);
+        if (cached.isPresent()) {
+            AuthenticatedClient verified = cached.get();
+            if (verified.isExpired(java.time.LocalDateTime.now())) {
+                log.debug("Cached API key expired for client {} at {}", verified.id(), verified.expiresAt());
+                apiKeyCache.invalidate(digest);
+                return Optional.empty();
+            }
+            log.trace("API key cache hit for client: {}", verified.id());
+            return cached;
+        }
+
         // Extract prefix (e.g., "sk_live_ab12cd" from "sk_live_ab12cd34ef56gh78...")
         String prefix = extractPrefix(apiKey);
+
+        if (apiKeyCache.isRejected(digest)) {
+            log.debug("API key rejected from negative cache: prefix={}", prefix);
+            rejected("negative_cache");
+            authFailureThrottle.recordFailure(sourceIp, null);
+            return Optional.empty();
+        }
+
+        Instant throttledUntil = authFailureThrottle.ipThrottledUntil(sourceIp);
+        if (throttledUntil != null) {
+            log.warn("Auth attempt throttled for source IP {}", sourceIp);
+            rejected("ip_throttled");
+            throw new AuthenticationThrottledException(throttledUntil);
+        }
+
         if (prefix == null) {
             log.debug("API key has invalid format");
+            authFailureThrottle.recordFailure(sourceIp, null);
+            failed("invalid_format");
             return Optional.empty();
         }
 
+        throttledUntil = authFailureThrottle.prefixThrottledUntil(prefix);
+        if (throttledUntil != null) {
+            log.warn("Auth attempt throttled for key prefix {}", prefix);
+            rejected("prefix_throttled");
+            throw new AuthenticationThrottledException(throttledUntil);
+        }
+
+        // Read before the lookup so a concurrent invalidation discards our put
+        long generation = apiKeyCache.generation();
+
         // Find client by prefix
         Optional<Client> clientOpt = clientRepository.findByApiKeyPrefix(prefix);
         if (clientOpt.isEmpty()) {
             log.debug("No client found for prefix: {}", prefix);
-            return Optional.empty();
+            return reject(digest, sourceIp, prefix, "unknown_prefix");
         }
 
         Client client = clientOpt.get();
@@ -58,33 +118,78 @@ public class AuthService {
         // Check if client is active
         if (!client.isActive()) {
             log.debug("Client {} is inactive", client.getId());
-            return Optional.empty();
+            return reject(digest, sourceIp, prefix, "inactive");
         }
 
         // Check if key is expired
         if (client.getExpiresAt() != null && client.getExpiresAt().isBefore(java.time.LocalDateTime.now())) {
             log.debug("API key expired for client {} at {}", client.getId(), client.getExpiresAt());
-            return Optional.empty();
+            return reject(digest, sourceIp, prefix, "expired");
         }
 
         // Verify the full API key against the stored hash
-        if (passwordEncoder.matches(apiKey, client.getApiKeyHash())) {
+        if (apiKeyVerifier.matches(digest, apiKey, client.getApiKeyHash())) {
             log.trace("API key validated for client: {}", client.getId());
-            return Optional.of(client);
+            upgradeHashIfNeeded(client, apiKey);
+            AuthenticatedClient authenticated = AuthenticatedClient.from(client);
+            apiKeyCache.put(digest, authenticated, generation);
+            return Optional.of(authenticated);
         }
 
         log.debug("API key hash mismatch for client: {}", client.getId());
+        return reject(digest, sourceIp, prefix, "hash_mismatch");
+    }
+
+    /**
+     * Record a failed verification in the negative cache and failure buckets.
+     */
+    private Optional<AuthenticatedClient> reject(String digest, String sourceIp, String prefix, String reason) {
+        apiKeyCache.markRejected(digest);
+        authFailureThrottle.recordFailure(sourceIp, prefix);
+        failed(reason);
         return Optional.empty();
     }
 
+    private void failed(String reason) {
+        meterRegistry.counter("auth.failures", "reason", reason).increment();
+    }
+
+    private void rejected(String reason) {
+        meterRegistry.counter("auth.rejected", "reason", reason).increment();
+    }
+
     /**
      * Hash an API key for storage.
      * 
      * @param apiKey the raw API key
-     * @return bcrypt hash of the key
+     * @return versioned hash of the key
      */
     public String hashApiKey(String apiKey) {
-        return passwordEncoder.encode(apiKey);
+        return apiKeyHasher.hash(apiKey);
+    }
+
+    /**
+     * Re-hash a legacy bcrypt key with the fast scheme after it verified.
+     * 
+     * <p>The update only applies if the stored hash is unchanged, so a
+     * concurrent rotation or revocation is never overwritten. Failures are
+     * logged and do not affect authentication.</p>
+     */
+    private void upgradeHashIfNeeded(Client client, String apiKey) {
+        String oldHash = client.getApiKeyHash();
+        if (!apiKeyHasher.needsUpgrade(oldHash)) {
+            return;
+        }
+
+        try {
+            String newHash = apiKeyHasher.hash(apiKey);
+            if (clientRepository.updateApiKeyHash(client.getId(), oldHash, newHash) == 1) {
+                client.setApiKeyHash(newHash);
+                log.info("Upgraded API key hash for client {} to HMAC", client.getId());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to upgrade API key hash for client {}: {}", client.getId(), e.getMessage());
+        }
     }
 
     /**
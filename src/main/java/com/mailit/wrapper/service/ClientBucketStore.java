@@ -0,0 +1,248 @@
+package com.mailit.wrapper.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.mailit.wrapper.repository.JdbcBucketProxyManager;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.TokensInheritanceStrategy;
+import io.github.bucket4j.local.LocalBucket;
+import io.github.bucket4j.local.LocalBucketBuilder;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded store of per-client rate limit buckets.
+ * 
+ * <p>Live buckets are kept in a cache bounded by size and idle time. Evicting
+ * a bucket never resets a client's quota:</p>
+ * <ul>
+ *   <li>With the JDBC backend the live entries are stateless proxies; the
+ *       state stays in {@code rate_limit_buckets} and a rebuilt proxy reads it.</li>
+ *   <li>With the memory backend an evicted bucket that is not full is kept as a
+ *       compact binary snapshot until it would have refilled completely, and
+ *       restored from it on the client's next request.</li>
+ * </ul>
+ */
+@Slf4j
+public class ClientBucketStore {
+
+    private final JdbcBucketProxyManager proxyManager;
+    private final long configurationVersion;
+    private final Cache<Long, Bucket> live;
+    private final Cache<Long, Snapshot> snapshots;
+
+    private final AtomicLong snapshotBytes = new AtomicLong();
+    private final DistributionSummary bucketBytes;
+    private final MeterRegistry meterRegistry;
+
+    public ClientBucketStore(JdbcBucketProxyManager proxyManager, long configurationVersion, long maxLive,
+            Duration idleTimeout, long maxSnapshots, MeterRegistry meterRegistry) {
+        this.proxyManager = proxyManager;
+        this.configurationVersion = configurationVersion;
+        this.meterRegistry = meterRegistry;
+
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maxSnapshots)
+                .expireAfter(new SnapshotExpiry())
+                .scheduler(Scheduler.systemScheduler())
+                .<Long, Snapshot>removalListener((clientId, snapshot, cause) -> {
+                    if (snapshot != null) {
+                        snapshotBytes.addAndGet(-snapshot.data().length);
+                    }
+                    if (cause == RemovalCause.SIZE) {
+                        // The only case where a partially drained quota is forgotten
+                        evicted("snapshot", cause);
+                        log.warn("Rate limit snapshot for client {} evicted under size pressure", clientId);
+                    }
+                })
+                .build();
+
+        // The eviction listener runs atomically with the eviction, so a
+        // concurrent get for the same client waits and then finds the snapshot
+        this.live = Caffeine.newBuilder()
+                .maximumSize(maxLive)
+                .expireAfterAccess(idleTimeout)
+                .<Long, Bucket>evictionListener((clientId, bucket, cause) -> {
+                    evicted("live", cause);
+                    if (bucket instanceof LocalBucket localBucket) {
+                        snapshot(clientId, localBucket);
+                    }
+                })
+                .build();
+
+        this.bucketBytes = DistributionSummary.builder("rate.limit.bucket.snapshot.size")
+                .description("Serialized size of an evicted in-memory rate limit bucket")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        meterRegistry.gauge("rate.limit.buckets", Tags.of("tier", "live"), live, Cache::estimatedSize);
+        meterRegistry.gauge("rate.limit.buckets", Tags.of("tier", "snapshot"), snapshots, Cache::estimatedSize);
+        meterRegistry.gauge("rate.limit.bucket.snapshot.memory", snapshotBytes);
+    }
+
+    /**
+     * Get a client's bucket, restoring or creating it if needed.
+     * 
+     * @param clientId the client ID
+     * @param configuration configuration for a newly created bucket
+     * @return the bucket
+     */
+    public Bucket get(Long clientId, Supplier<BucketConfiguration> configuration) {
+        return live.get(clientId, id -> load(id, configuration));
+    }
+
+    /**
+     * Apply an operation to a client's bucket atomically with its eviction.
+     * 
+     * <p>Tokens consumed through a reference from {@link #get} after the
+     * bucket was snapshotted would be lost from the snapshot; consuming
+     * in-memory buckets through this method prevents that.</p>
+     * 
+     * @param clientId the client ID
+     * @param configuration configuration for a newly created bucket
+     * @param operation the operation, e.g. a consumption
+     * @return the operation's result
+     */
+    public <R> R apply(Long clientId, Supplier<BucketConfiguration> configuration, Function<Bucket, R> operation) {
+        Object[] result = new Object[1];
+        live.asMap().compute(clientId, (id, bucket) -> {
+            Bucket current = bucket != null ? bucket : load(id, configuration);
+            result[0] = operation.apply(current);
+            return current;
+        });
+        @SuppressWarnings("unchecked")
+        R value = (R) result[0];
+        return value;
+    }
+
+    /**
+     * Switch a client's bucket to a new layout, e.g. after a plan change.
+     * 
+     * <p>Bandwidths are matched by ID and keep the tokens already used: an
+     * upgrade adds the extra capacity, a downgrade caps what is left at the
+     * new capacity. A snapshotted bucket is restored first; a shared bucket
+     * is changed in place for every node.</p>
+     * 
+     * @param clientId the client ID
+     * @param configuration the new layout
+     */
+    public void reconfigure(Long clientId, BucketConfiguration configuration) {
+        apply(clientId, () -> configuration, bucket -> {
+            bucket.replaceConfiguration(configuration, TokensInheritanceStrategy.ADDITIVE);
+            return null;
+        });
+    }
+
+    /**
+     * Forget a client's bucket entirely, including any shared state.
+     * 
+     * @param clientId the client ID
+     */
+    public void remove(Long clientId) {
+        live.invalidate(clientId);
+        snapshots.invalidate(clientId);
+        if (proxyManager != null) {
+            proxyManager.removeProxy(clientId);
+        }
+    }
+
+    /**
+     * Forget every bucket, including shared state.
+     */
+    public void clear() {
+        live.invalidateAll();
+        snapshots.invalidateAll();
+        if (proxyManager != null) {
+            proxyManager.removeAll();
+        }
+    }
+
+    private Bucket load(Long clientId, Supplier<BucketConfiguration> configuration) {
+        if (proxyManager != null) {
+            // Rows written under an older layout are migrated in place, keeping their tokens
+            return proxyManager.builder()
+                    .withImplicitConfigurationReplacement(configurationVersion, TokensInheritanceStrategy.AS_IS)
+                    .build(clientId, configuration);
+        }
+
+        Snapshot snapshot = snapshots.asMap().remove(clientId);
+        if (snapshot != null) {
+            try {
+                return LocalBucket.fromBinarySnapshot(snapshot.data());
+            } catch (IOException e) {
+                log.warn("Failed to restore rate limit bucket for client {}: {}", clientId, e.getMessage());
+            }
+        }
+
+        LocalBucketBuilder builder = Bucket.builder();
+        for (Bandwidth bandwidth : configuration.get().getBandwidths()) {
+            builder.addLimit(bandwidth);
+        }
+        return builder.build();
+    }
+
+    private void snapshot(Long clientId, LocalBucket bucket) {
+        Bandwidth[] bandwidths = bucket.getConfiguration().getBandwidths();
+        long largestCapacity = 0;
+        long nanosToFull = 0;
+        for (Bandwidth bandwidth : bandwidths) {
+            largestCapacity = Math.max(largestCapacity, bandwidth.getCapacity());
+            long periods = (bandwidth.getCapacity() + bandwidth.getRefillTokens() - 1) / bandwidth.getRefillTokens();
+            nanosToFull = Math.max(nanosToFull, periods * bandwidth.getRefillPeriodNanos());
+        }
+
+        if (bucket.getAvailableTokens() >= largestCapacity) {
+            // Full - a fresh bucket is equivalent
+            return;
+        }
+
+        try {
+            byte[] data = bucket.toBinarySnapshot();
+            snapshots.put(clientId, new Snapshot(data, nanosToFull));
+            snapshotBytes.addAndGet(data.length);
+            bucketBytes.record(data.length);
+        } catch (IOException e) {
+            log.warn("Failed to snapshot rate limit bucket for client {}: {}", clientId, e.getMessage());
+        }
+    }
+
+    private void evicted(String tier, RemovalCause cause) {
+        meterRegistry.counter("rate.limit.buckets.evicted", "tier", tier, "cause", cause.name().toLowerCase())
+                .increment();
+    }
+
+    /**
+     * Serialized bucket state, kept until the bucket would be full again.
+     */
+    private record Snapshot(byte[] data, long nanosToFull) {}
+
+    private static final class SnapshotExpiry implements Expiry<Long, Snapshot> {
+
+        @Override
+        public long expireAfterCreate(Long key, Snapshot value, long currentTime) {
+            return value.nanosToFull();
+        }
+
+        @Override
+        public long expireAfterUpdate(Long key, Snapshot value, long currentTime, long currentDuration) {
+            return value.nanosToFull();
+        }
+
+        @Override
+        public long expireAfterRead(Long key, Snapshot value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -7,7 +7,6 @@ import com.mailit.wrapper.repository.ClientRepository;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.crypto.bcrypt.BCrypt;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,7 +21,12 @@ import java.util.Base64;
  * {@code sk_live_[prefix]_[secret]}</p>
  * 
  * <p>The prefix is stored in plaintext for quick lookup, while the full
- * key is hashed with bcrypt for secure storage.</p>
+ * key is hashed via {@link ApiKeyHasher} for secure storage.</p>
+ * 
+ * <p>Every operation that changes what an existing key grants invalidates
+ * that client's entries in {@link ApiKeyCache} and bumps its session token
+ * epoch so outstanding tokens from {@link SessionTokenService} stop working.
+ * A plan change also moves the client's rate limit bucket to the new limits.</p>
  */
 @Service
 public class ClientServiceImpl implements ClientService {
@@ -34,10 +38,23 @@ public class ClientServiceImpl implements ClientService {
     private static final int SECRET_LENGTH = 32;
     
     private final ClientRepository clientRepository;
+    private final ApiKeyCache apiKeyCache;
+    private final ApiKeyHasher apiKeyHasher;
+    private final SessionTokenService sessionTokenService;
+    private final RateLimitService rateLimitService;
     private final SecureRandom secureRandom;
     
-    public ClientServiceImpl(ClientRepository clientRepository) {
+    public ClientServiceImpl(
+            ClientRepository clientRepository,
+            ApiKeyCache apiKeyCache,
+            ApiKeyHasher apiKeyHasher,
+            SessionTokenService sessionTokenService,
+            RateLimitService rateLimitService) {
         this.clientRepository = clientRepository;
+        this.apiKeyCache = apiKeyCache;
+        this.apiKeyHasher = apiKeyHasher;
+        this.sessionTokenService = sessionTokenService;
+        this.rateLimitService = rateLimitService;
         this.secureRandom = new SecureRandom();
     }
     
@@ -49,7 +66,7 @@ public class ClientServiceImpl implements ClientService {
         String secret = generateSecret();
         String fullPrefix = KEY_PREFIX + prefixPart;
         String rawApiKey = fullPrefix + "_" + secret;
-        String keyHash = BCrypt.hashpw(rawApiKey, BCrypt.gensalt(12));
+        String keyHash = apiKeyHasher.hash(rawApiKey);
         
         // Create client
         Client client = new Client();
@@ -77,15 +94,17 @@ public class ClientServiceImpl implements ClientService {
         String secret = generateSecret();
         String fullPrefix = KEY_PREFIX + prefixPart;
         String rawApiKey = fullPrefix + "_" + secret;
-        String keyHash = BCrypt.hashpw(rawApiKey, BCrypt.gensalt(12));
+        String keyHash = apiKeyHasher.hash(rawApiKey);
         
         // Update client
         String oldPrefix = client.getApiKeyPrefix();
         client.setApiKeyPrefix(fullPrefix);
         client.setApiKeyHash(keyHash);
+        client.revokeSessionTokens();
         client.setUpdatedAt(LocalDateTime.now());
         
         client = clientRepository.save(client);
+        invalidateCredentials(client);
         logger.info("Rotated API key for client {} (old prefix: {}, new prefix: {})", 
                 client.getId(), oldPrefix, fullPrefix);
         
@@ -101,9 +120,11 @@ public class ClientServiceImpl implements ClientService {
         // Revoke by clearing the hash (prefix kept for audit)
         String prefix = client.getApiKeyPrefix();
         client.setApiKeyHash(null);
+        client.revokeSessionTokens();
         client.setUpdatedAt(LocalDateTime.now());
         
-        clientRepository.save(client);
+        client = clientRepository.save(client);
+        invalidateCredentials(client);
         logger.info("Revoked API key for client {} (prefix: {})", clientId, prefix);
     }
     
@@ -115,9 +136,12 @@ public class ClientServiceImpl implements ClientService {
         
         RateLimitPlan oldPlan = client.getPlan();
         client.setPlan(plan);
+        client.revokeSessionTokens(); // Tokens embed the plan
         client.setUpdatedAt(LocalDateTime.now());
         
         client = clientRepository.save(client);
+        invalidateCredentials(client);
+        rateLimitService.changePlan(clientId, plan); // Stored buckets keep the layout they were created with
         logger.info("Updated plan for client {} from {} to {}", clientId, oldPlan, plan);
         
         return client;
@@ -131,9 +155,11 @@ public class ClientServiceImpl implements ClientService {
         
         client.setActive(active);
         client.setExpiresAt(expiresAt);
+        client.revokeSessionTokens();
         client.setUpdatedAt(LocalDateTime.now());
         
         client = clientRepository.save(client);
+        invalidateCredentials(client);
         logger.info("Updated status for client {}: active={}, expiresAt={}", clientId, active, expiresAt);
         
         return client;
@@ -144,6 +170,14 @@ public class ClientServiceImpl implements ClientService {
         return clientRepository.findAll();
     }
     
+    /**
+     * Drop cached key verifications and publish the new session token epoch.
+     */
+    private void invalidateCredentials(Client client) {
+        apiKeyCache.invalidateClient(client.getId());
+        sessionTokenService.onEpochChanged(client.getId(), client.getTokenEpoch());
+    }
+    
     private String generatePrefix() {
         byte[] bytes = new byte[PREFIX_LENGTH];
         secureRandom.nextBytes(bytes);
@@ -1,40 +1,105 @@
 package com.mailit.wrapper.service;
 
 import com.mailit.wrapper.exception.RateLimitException;
+import com.mailit.wrapper.model.AuthenticatedClient;
 import com.mailit.wrapper.model.RateLimitPlan;
-import com.mailit.wrapper.model.entity.Client;
+import com.mailit.wrapper.model.RateLimitStatus;
+import com.mailit.wrapper.repository.JdbcBucketProxyManager;
 import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConfigurationBuilder;
+import io.github.bucket4j.ConsumptionProbe;
 import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.ZoneOffset;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for rate limiting API requests.
  * 
- * <p>Uses Bucket4j with Token Bucket algorithm. Currently uses in-memory
- * storage suitable for single-instance deployments.</p>
- * 
- * <p>Note: Redis-backed implementation can be added later without changing
- * this interface. Simply create a new implementation class and configure
- * via Spring profiles.</p>
+ * <p>Uses Bucket4j with Token Bucket algorithm. The backend is selected by
+ * {@code rate-limiting.backend}:</p>
+ * <ul>
+ *   <li>{@code memory} - buckets live in this JVM; suitable for a single instance.</li>
+ *   <li>{@code jdbc} - bucket state is stored in {@code rate_limit_buckets} via
+ *       {@link JdbcBucketProxyManager}, so all instances share one quota per client.
+ *       Unless disabled, tokens are leased in blocks through {@link TokenLeasePool}
+ *       so most requests are decided without a database round trip.</li>
+ * </ul>
  */
 @Slf4j
 @Service
 public class RateLimitService {
 
     /**
-     * Map of client ID to their rate limit bucket.
-     * Buckets are created lazily on first request.
+     * Version of the bucket layout. Shared buckets stored under an older
+     * version are migrated to the current layout, keeping their tokens.
+     * Plan changes are applied per client by {@link #changePlan}.
      */
-    private final Map<Long, Bucket> clientBuckets = new ConcurrentHashMap<>();
+    private static final long BUCKET_CONFIGURATION_VERSION = 2;
+
+    private static final String DAILY_BANDWIDTH = "daily";
+    private static final String PER_SECOND_BANDWIDTH = "per-second";
+
+    /**
+     * Client ID to their rate limit bucket, bounded by size and idle time.
+     * Buckets are created lazily on first request. With the JDBC backend
+     * these are stateless proxies onto the shared table.
+     */
+    private final ClientBucketStore clientBuckets;
+
+    /**
+     * Node-local token leases on shared buckets, or null if leasing is off.
+     */
+    private final TokenLeasePool leasePool;
+
+    /**
+     * Bucket layout per plan, built once from {@code rate-limiting.plans.*}.
+     */
+    private final Map<RateLimitPlan, BucketConfiguration> planConfigurations = new EnumMap<>(RateLimitPlan.class);
+
+    public RateLimitService(
+            ObjectProvider<JdbcBucketProxyManager> proxyManager,
+            MeterRegistry meterRegistry,
+            Environment environment,
+            @Value("${rate-limiting.lease.enabled:true}") boolean leaseEnabled,
+            @Value("${rate-limiting.lease.fraction:0.05}") double leaseFraction,
+            @Value("${rate-limiting.lease.max-size:100}") long leaseMaxSize,
+            @Value("${rate-limiting.lease.ttl-seconds:5}") long leaseTtlSeconds,
+            @Value("${rate-limiting.lease.max-clients:10000}") long leaseMaxClients,
+            @Value("${rate-limiting.buckets.max-size:50000}") long bucketsMaxSize,
+            @Value("${rate-limiting.buckets.idle-minutes:60}") long bucketsIdleMinutes,
+            @Value("${rate-limiting.buckets.max-snapshots:200000}") long bucketsMaxSnapshots) {
+        for (RateLimitPlan plan : RateLimitPlan.values()) {
+            if (!plan.isUnlimited()) {
+                planConfigurations.put(plan, buildConfiguration(plan, environment));
+            }
+        }
+
+        JdbcBucketProxyManager sharedBuckets = proxyManager.getIfAvailable();
+        this.clientBuckets = new ClientBucketStore(sharedBuckets, BUCKET_CONFIGURATION_VERSION, bucketsMaxSize,
+                Duration.ofMinutes(bucketsIdleMinutes), bucketsMaxSnapshots, meterRegistry);
+
+        if (sharedBuckets != null && leaseEnabled) {
+            this.leasePool = new TokenLeasePool(leaseFraction, leaseMaxSize,
+                    Duration.ofSeconds(leaseTtlSeconds), leaseMaxClients, meterRegistry);
+        } else {
+            this.leasePool = null;
+        }
+
+        log.info("Rate limit backend: {}{}", sharedBuckets != null ? "jdbc" : "memory",
+                leasePool != null ? " (leasing " + (leaseFraction * 100) + "% up to " + leaseMaxSize
+                        + " tokens for " + leaseTtlSeconds + "s)" : "");
+    }
 
     /**
      * Check if a client can make a request and consume a token.
@@ -42,29 +107,53 @@ public class RateLimitService {
      * @param client the authenticated client
      * @throws RateLimitException if rate limit exceeded
      */
-    public void checkRateLimit(Client client) {
-        if (client.getPlan().isUnlimited()) {
-            log.trace("Client {} has unlimited plan, skipping rate limit", client.getId());
-            return;
+    public void checkRateLimit(AuthenticatedClient client) {
+        checkRateLimit(client, 1);
+    }
+
+    /**
+     * Check if a client can make a request and consume {@code cost} tokens.
+     * 
+     * <p>Requests that fan out to several upstream calls cost more than
+     * requests served locally, so the daily quota tracks upstream usage.</p>
+     * 
+     * @param client the authenticated client
+     * @param cost number of tokens the request consumes
+     * @return the client's quota after consumption
+     * @throws RateLimitException if the remaining quota is below {@code cost}
+     */
+    public RateLimitStatus checkRateLimit(AuthenticatedClient client, long cost) {
+        if (client.plan().isUnlimited()) {
+            log.trace("Client {} has unlimited plan, skipping rate limit", client.id());
+            return RateLimitStatus.unlimited();
         }
 
-        Bucket bucket = clientBuckets.computeIfAbsent(
-                client.getId(),
-                id -> createBucket(client.getPlan())
-        );
+        BucketConfiguration configuration = planConfigurations.get(client.plan());
 
-        if (!bucket.tryConsume(1)) {
-            Instant resetAt = getNextDayStart();
-            log.info("Rate limit exceeded for client: id={}, plan={}", 
-                    client.getId(), client.getPlan());
+        // In-memory buckets are consumed atomically with their eviction so the snapshot keeps every token
+        ConsumptionProbe probe = leasePool != null
+                ? leasePool.tryConsume(client.id(), clientBuckets.get(client.id(), () -> configuration), cost,
+                        configuration)
+                : clientBuckets.apply(client.id(), () -> configuration,
+                        bucket -> bucket.tryConsumeAndReturnRemaining(cost));
+        if (!probe.isConsumed()) {
+            Instant resetAt = Instant.now().plusNanos(probe.getNanosToWaitForRefill());
+            log.info("Rate limit exceeded for client: id={}, plan={}, cost={}, remaining={}", 
+                    client.id(), client.plan(), cost, probe.getRemainingTokens());
             throw new RateLimitException(
-                    client.getPlan().getRequestsPerDay(),
+                    client.plan().getRequestsPerDay(),
+                    (int) probe.getRemainingTokens(),
                     resetAt
             );
         }
 
-        log.trace("Rate limit check passed for client: id={}, remaining={}",
-                client.getId(), bucket.getAvailableTokens());
+        log.trace("Rate limit check passed for client: id={}, cost={}, remaining={}",
+                client.id(), cost, probe.getRemainingTokens());
+        return new RateLimitStatus(
+                client.plan().getRequestsPerDay(),
+                probe.getRemainingTokens(),
+                Instant.now().plusNanos(probe.getNanosToWaitForReset())
+        );
     }
 
     /**
@@ -74,12 +163,12 @@ public class RateLimitService {
      * @param batchSize the number of items in the batch
      * @throws RateLimitException if batch size exceeds plan limit
      */
-    public void checkBatchSize(Client client, int batchSize) {
-        int maxBatchSize = client.getPlan().getTrackingsPerBatch();
+    public void checkBatchSize(AuthenticatedClient client, int batchSize) {
+        int maxBatchSize = client.plan().getTrackingsPerBatch();
         
         if (batchSize > maxBatchSize) {
             log.info("Batch size {} exceeds limit {} for client: id={}, plan={}",
-                    batchSize, maxBatchSize, client.getId(), client.getPlan());
+                    batchSize, maxBatchSize, client.id(), client.plan());
             throw new RateLimitException(
                     "Batch size " + batchSize + " exceeds your plan limit of " + maxBatchSize,
                     maxBatchSize,
@@ -94,24 +183,54 @@ public class RateLimitService {
      * @param client the client
      * @return remaining requests, or -1 if unlimited
      */
-    public long getRemainingRequests(Client client) {
-        if (client.getPlan().isUnlimited()) {
+    public long getRemainingRequests(AuthenticatedClient client) {
+        if (client.plan().isUnlimited()) {
             return -1;
         }
 
-        Bucket bucket = clientBuckets.get(client.getId());
-        if (bucket == null) {
-            return client.getPlan().getRequestsPerDay();
+        return clientBuckets.get(client.id(), () -> planConfigurations.get(client.plan())).getAvailableTokens();
+    }
+
+    /**
+     * Move a client's bucket to a new plan's limits, keeping the tokens it
+     * has used. Without this the stored bucket keeps the old plan's
+     * capacity and refill, across restarts and instances.
+     * 
+     * <p>The client's lease on this node is returned first; leases on other
+     * nodes go back to the reconfigured bucket when they expire.</p>
+     * 
+     * @param clientId the client ID
+     * @param plan the client's new plan
+     */
+    public void changePlan(Long clientId, RateLimitPlan plan) {
+        if (leasePool != null) {
+            leasePool.release(clientId);
+        }
+        if (plan.isUnlimited()) {
+            // The bucket is not consulted, and is reconfigured again if the client leaves this plan
+            return;
         }
 
-        return bucket.getAvailableTokens();
+        log.info("Reconfiguring rate limit bucket for client {} to plan {}", clientId, plan);
+        clientBuckets.reconfigure(clientId, planConfigurations.get(plan));
     }
 
     /**
-     * Reset rate limits (typically called at midnight or for testing).
+     * Return leased tokens to the shared buckets on shutdown.
+     */
+    @PreDestroy
+    void releaseLeases() {
+        if (leasePool != null) {
+            leasePool.releaseAll();
+        }
+    }
+
+    /**
+     * Reset rate limits (typically for testing).
      */
     public void resetLimits() {
         log.info("Resetting all rate limit buckets");
+        releaseLeases();
         clientBuckets.clear();
     }
 
@@ -125,22 +244,43 @@ public class RateLimitService {
         clientBuckets.remove(clientId);
     }
 
-    private Bucket createBucket(RateLimitPlan plan) {
-        // Daily limit that refills at midnight
-        Bandwidth limit = Bandwidth.classic(
-                plan.getRequestsPerDay(),
-                Refill.intervally(plan.getRequestsPerDay(), Duration.ofDays(1))
-        );
+    /**
+     * Build the bucket layout for a plan.
+     * 
+     * <p>The daily quota refills either greedily (a continuous trickle, the
+     * default) or intervally (all at once, one day after the bucket was
+     * created). An optional per-second bandwidth caps bursts; it is never
+     * smaller than the largest single request so batches stay possible.</p>
+     */
+    private BucketConfiguration buildConfiguration(RateLimitPlan plan, Environment environment) {
+        String prefix = "rate-limiting.plans." + plan.name().toLowerCase() + ".";
+        String refill = environment.getProperty(prefix + "refill", "greedy");
+        long perSecond = environment.getProperty(prefix + "per-second", Long.class, 0L);
 
-        return Bucket.builder()
-                .addLimit(limit)
-                .build();
-    }
+        long perDay = plan.getRequestsPerDay();
+        Refill dailyRefill = switch (refill) {
+            case "greedy" -> Refill.greedy(perDay, Duration.ofDays(1));
+            case "intervally" -> Refill.intervally(perDay, Duration.ofDays(1));
+            default -> throw new IllegalStateException(
+                    "Unknown refill strategy '" + refill + "' for plan " + plan + " (expected greedy or intervally)");
+        };
+
+        ConfigurationBuilder builder = BucketConfiguration.builder()
+                .addLimit(Bandwidth.classic(perDay, dailyRefill).withId(DAILY_BANDWIDTH));
+
+        if (perSecond > 0) {
+            long largestRequest = 1L + plan.getTrackingsPerBatch();
+            if (perSecond < largestRequest) {
+                log.warn("Raising per-second limit for plan {} from {} to {} so full batches fit",
+                        plan, perSecond, largestRequest);
+                perSecond = largestRequest;
+            }
+            builder.addLimit(Bandwidth.classic(perSecond, Refill.greedy(perSecond, Duration.ofSeconds(1)))
+                    .withId(PER_SECOND_BANDWIDTH));
+        }
 
-    private Instant getNextDayStart() {
-        return LocalDate.now(ZoneOffset.UTC)
-                .plusDays(1)
-                .atStartOfDay(ZoneOffset.UTC)
-                .toInstant();
+        log.info("Rate limit plan {}: {}/day ({} refill){}", plan, perDay, refill,
+                perSecond > 0 ? ", burst " + perSecond + "/s" : "");
+        return builder.build();
     }
 }
@@ -0,0 +1,218 @@
+package com.mailit.wrapper.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.RateLimitPlan;
+import com.mailit.wrapper.repository.ClientRepository;
+import com.mailit.wrapper.util.Secrets;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Issues and verifies short-lived, HMAC-signed session tokens.
+ *
+ * <p>A client exchanges its API key once for a bearer token, then presents
+ * the token on subsequent requests. Tokens are verified statelessly: the
+ * signature, expiry, client ID and plan are all carried in the token, so
+ * no database lookup or key hashing is needed.</p>
+ *
+ * <p>Format: {@code st_<base64url(payload)>.<base64url(hmac)>} where the
+ * payload is {@code v1|clientId|epoch|expiresAt|plan|apiKeyPrefix}.</p>
+ *
+ * <p>Each client has a revocation epoch ({@code clients.token_epoch}).
+ * Revoking, rotating or suspending bumps it, which invalidates every
+ * outstanding token. Epochs are cached for a short interval, so other
+ * instances observe a bump within {@code epoch-cache-seconds}.</p>
+ *
+ * <p>The signing secret must be at least 32 bytes and not a placeholder;
+ * anyone who knows it can forge tokens for any client.</p>
+ */
+@Slf4j
+@Service
+public class SessionTokenService {
+
+    public static final String TOKEN_PREFIX = "st_";
+    private static final String VERSION = "v1";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final ClientRepository clientRepository;
+    private final Duration ttl;
+    private final byte[] secret;
+    private final ThreadLocal<Mac> mac;
+
+    /**
+     * Client ID to current revocation epoch.
+     */
+    private final Cache<Long, Long> epochs;
+
+    public SessionTokenService(
+            ClientRepository clientRepository,
+            @Value("${auth.session-token.secret:}") String secret,
+            @Value("${auth.session-token.ttl-seconds:900}") long ttlSeconds,
+            @Value("${auth.session-token.epoch-cache-seconds:30}") long epochCacheSeconds) {
+        Secrets.requireStrong("auth.session-token.secret", secret);
+        this.clientRepository = clientRepository;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.secret = secret.isBlank() ? randomSecret() : secret.getBytes(StandardCharsets.UTF_8);
+        this.mac = ThreadLocal.withInitial(this::newMac);
+        this.epochs = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofSeconds(epochCacheSeconds))
+                .build();
+
+        if (secret.isBlank()) {
+            log.warn("No session token secret configured (auth.session-token.secret); "
+                    + "using a random per-instance secret - tokens are only valid on the issuing instance");
+        }
+    }
+
+    /**
+     * Issue a session token for an authenticated client.
+     *
+     * @param client the client authenticated by API key
+     * @return the signed token and its expiry
+     */
+    public IssuedToken issue(AuthenticatedClient client) {
+        Instant expiresAt = Instant.now().plus(ttl);
+        if (client.expiresAt() != null) {
+            // Key expiry is a local time, compared with LocalDateTime.now() everywhere else
+            Instant keyExpiry = client.expiresAt().atZone(ZoneId.systemDefault()).toInstant();
+            if (keyExpiry.isBefore(expiresAt)) {
+                expiresAt = keyExpiry;
+            }
+        }
+
+        long epoch = currentEpoch(client.id());
+        String payload = String.join("|",
+                VERSION,
+                String.valueOf(client.id()),
+                String.valueOf(epoch),
+                String.valueOf(expiresAt.getEpochSecond()),
+                client.plan().name(),
+                client.apiKeyPrefix());
+
+        String encodedPayload = encode(payload.getBytes(StandardCharsets.UTF_8));
+        String token = TOKEN_PREFIX + encodedPayload + "." + encode(sign(encodedPayload));
+
+        log.debug("Issued session token for client {} expiring at {}", client.id(), expiresAt);
+        return new IssuedToken(token, expiresAt);
+    }
+
+    /**
+     * Verify a session token.
+     *
+     * @param token the bearer token
+     * @return the client snapshot carried by the token, or empty if invalid
+     */
+    public Optional<AuthenticatedClient> verify(String token) {
+        if (token == null || !token.startsWith(TOKEN_PREFIX)) {
+            return Optional.empty();
+        }
+
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+
+        String encodedPayload = token.substring(TOKEN_PREFIX.length(), dot);
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(encodedPayload), signature)) {
+                log.debug("Session token signature mismatch");
+                return Optional.empty();
+            }
+
+            String[] claims = new String(Base64.getUrlDecoder().decode(encodedPayload), StandardCharsets.UTF_8)
+                    .split("\\|");
+            if (claims.length != 6 || !VERSION.equals(claims[0])) {
+                return Optional.empty();
+            }
+
+            Long clientId = Long.valueOf(claims[1]);
+            long epoch = Long.parseLong(claims[2]);
+            long expiresAt = Long.parseLong(claims[3]);
+
+            if (Instant.now().getEpochSecond() >= expiresAt) {
+                log.debug("Session token expired for client {}", clientId);
+                return Optional.empty();
+            }
+
+            if (epoch != currentEpoch(clientId)) {
+                log.debug("Session token revoked for client {}", clientId);
+                return Optional.empty();
+            }
+
+            return Optional.of(new AuthenticatedClient(
+                    clientId,
+                    null,
+                    claims[5],
+                    RateLimitPlan.valueOf(claims[4]),
+                    null));
+        } catch (IllegalArgumentException e) {
+            log.debug("Malformed session token: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Record a new revocation epoch for a client on this instance.
+     * Other instances pick it up when their cached epoch expires.
+     *
+     * @param clientId the client ID
+     * @param epoch the new epoch
+     */
+    public void onEpochChanged(Long clientId, long epoch) {
+        epochs.put(clientId, epoch);
+    }
+
+    private long currentEpoch(Long clientId) {
+        // Unknown clients get an epoch no token can carry
+        return epochs.get(clientId, id -> clientRepository.findTokenEpochById(id).orElse(-1L));
+    }
+
+    private byte[] sign(String encodedPayload) {
+        return mac.get().doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] randomSecret() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+            instance.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + HMAC_ALGORITHM, e);
+        }
+    }
+
+    /**
+     * A freshly issued session token.
+     *
+     * @param token the bearer token
+     * @param expiresAt when the token stops being accepted
+     */
+    public record IssuedToken(String token, Instant expiresAt) {}
+}
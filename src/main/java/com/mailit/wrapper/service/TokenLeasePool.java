@@ -0,0 +1,240 @@
+package com.mailit.wrapper.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.VerboseResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local leases of tokens taken in bulk from shared rate limit buckets.
+ * 
+ * <p>Instead of a database round trip per request, a node takes a block of
+ * tokens (a fraction of the client's last known remaining quota) from the
+ * shared bucket and serves requests from it with a lock-free decrement.
+ * When the lease cannot cover a request, the leftover is carried into the
+ * next block. Near exhaustion, only the request's own cost is taken, so the
+ * shared bucket is never overdrawn.</p>
+ * 
+ * <p>Leases expire after a short TTL or on shutdown, and their unused
+ * tokens are returned to the shared bucket. Tokens leased by one node are
+ * temporarily unavailable to the others, which bounds the error to the
+ * outstanding leases, never over-admission.</p>
+ */
+@Slf4j
+public class TokenLeasePool {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final double leaseFraction;
+    private final long maxLeaseSize;
+    private final Cache<Long, Lease> leases;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final Counter localHits;
+    private final Counter acquisitions;
+
+    public TokenLeasePool(double leaseFraction, long maxLeaseSize, Duration leaseTtl, long maxClients,
+            MeterRegistry meterRegistry) {
+        this.leaseFraction = leaseFraction;
+        this.maxLeaseSize = maxLeaseSize;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterWrite(leaseTtl)
+                .scheduler(Scheduler.systemScheduler())
+                // Run returns synchronously so shutdown can rely on them having completed
+                .executor(Runnable::run)
+                .<Long, Lease>removalListener((clientId, lease, cause) -> {
+                    if (lease != null) {
+                        lease.release();
+                    }
+                })
+                .build();
+
+        this.localHits = meterRegistry.counter("rate.limit.lease.hits");
+        this.acquisitions = meterRegistry.counter("rate.limit.lease.acquisitions");
+        meterRegistry.gaugeMapSize("rate.limit.lease.active", Tags.empty(), leases.asMap());
+    }
+
+    /**
+     * Consume tokens for a client, from its local lease when possible.
+     * 
+     * @param clientId the client ID
+     * @param shared the client's shared bucket
+     * @param cost number of tokens to consume
+     * @param configuration the shared bucket's layout, used to size leases
+     * @return the outcome, with remaining tokens estimated as shared plus leased
+     */
+    public ConsumptionProbe tryConsume(Long clientId, Bucket shared, long cost, BucketConfiguration configuration) {
+        Lease lease = leases.getIfPresent(clientId);
+        if (lease != null && lease.tryTake(cost)) {
+            localHits.increment();
+            return lease.probe();
+        }
+
+        synchronized (locks[Math.floorMod(clientId.hashCode(), LOCK_STRIPES)]) {
+            // Another thread may have renewed the lease while we waited
+            lease = leases.getIfPresent(clientId);
+            if (lease != null && lease.tryTake(cost)) {
+                localHits.increment();
+                return lease.probe();
+            }
+
+            long carried = lease != null ? lease.close() : 0;
+            int quota = quotaBandwidth(configuration);
+            long lastKnownQuota = lease != null
+                    ? lease.quotaRemaining
+                    : configuration.getBandwidths()[quota].getCapacity();
+            return acquire(clientId, shared, cost, carried, lastKnownQuota, quota, burstCapacity(configuration));
+        }
+    }
+
+    /**
+     * Return a client's outstanding lease to its shared bucket.
+     * 
+     * @param clientId the client ID
+     */
+    public void release(Long clientId) {
+        synchronized (locks[Math.floorMod(clientId.hashCode(), LOCK_STRIPES)]) {
+            leases.invalidate(clientId);
+        }
+    }
+
+    /**
+     * Return every outstanding lease to the shared buckets.
+     */
+    public void releaseAll() {
+        log.info("Returning {} rate limit token leases", leases.estimatedSize());
+        leases.invalidateAll();
+        leases.cleanUp();
+    }
+
+    private ConsumptionProbe acquire(Long clientId, Bucket shared, long cost, long carried,
+            long lastKnownQuota, int quota, long burstCapacity) {
+        long needed = Math.max(0, cost - carried);
+        long extra = Math.min(maxLeaseSize, (long) Math.ceil(lastKnownQuota * leaseFraction));
+        extra = Math.max(0, Math.min(extra, burstCapacity - needed));
+
+        VerboseResult<ConsumptionProbe> result = shared.asVerbose().tryConsumeAndReturnRemaining(needed + extra);
+        if (!result.getValue().isConsumed() && extra > 0) {
+            // Not enough for a full lease - take only what this request needs
+            extra = 0;
+            result = shared.asVerbose().tryConsumeAndReturnRemaining(needed);
+        }
+        ConsumptionProbe probe = result.getValue();
+        acquisitions.increment();
+
+        if (!probe.isConsumed()) {
+            if (carried > 0) {
+                shared.addTokens(carried);
+            }
+            return ConsumptionProbe.rejected(probe.getRemainingTokens() + carried,
+                    probe.getNanosToWaitForRefill(), probe.getNanosToWaitForReset());
+        }
+
+        long quotaRemaining = result.getDiagnostics().getAvailableTokensPerEachBandwidth()[quota];
+        Lease fresh = new Lease(shared, carried + needed + extra - cost,
+                probe.getRemainingTokens(), quotaRemaining, probe.getNanosToWaitForReset());
+        leases.put(clientId, fresh);
+
+        log.trace("Leased {} tokens for client {} (shared remaining={}, quota remaining={})",
+                needed + extra, clientId, probe.getRemainingTokens(), quotaRemaining);
+        return fresh.probe();
+    }
+
+    /**
+     * Index of the bandwidth that holds the long-term quota.
+     */
+    private static int quotaBandwidth(BucketConfiguration configuration) {
+        Bandwidth[] bandwidths = configuration.getBandwidths();
+        int quota = 0;
+        for (int i = 1; i < bandwidths.length; i++) {
+            if (bandwidths[i].getRefillPeriodNanos() > bandwidths[quota].getRefillPeriodNanos()) {
+                quota = i;
+            }
+        }
+        return quota;
+    }
+
+    /**
+     * Most tokens the shared bucket can grant at once.
+     */
+    private static long burstCapacity(BucketConfiguration configuration) {
+        long capacity = Long.MAX_VALUE;
+        for (Bandwidth bandwidth : configuration.getBandwidths()) {
+            capacity = Math.min(capacity, bandwidth.getCapacity());
+        }
+        return capacity;
+    }
+
+    /**
+     * A block of tokens taken from one shared bucket.
+     */
+    private static final class Lease {
+
+        private static final long CLOSED = -1;
+
+        private final Bucket shared;
+        private final AtomicLong tokens;
+        private final long sharedRemaining;
+        private final long quotaRemaining;
+        private final long resetAtNanos;
+
+        Lease(Bucket shared, long tokens, long sharedRemaining, long quotaRemaining, long nanosToReset) {
+            this.shared = shared;
+            this.tokens = new AtomicLong(tokens);
+            this.sharedRemaining = sharedRemaining;
+            this.quotaRemaining = quotaRemaining;
+            this.resetAtNanos = System.nanoTime() + nanosToReset;
+        }
+
+        boolean tryTake(long cost) {
+            long current;
+            do {
+                current = tokens.get();
+                if (current < cost) {
+                    return false;
+                }
+            } while (!tokens.compareAndSet(current, current - cost));
+            return true;
+        }
+
+        ConsumptionProbe probe() {
+            long available = Math.max(0, tokens.get());
+            return ConsumptionProbe.consumed(sharedRemaining + available,
+                    Math.max(0, resetAtNanos - System.nanoTime()));
+        }
+
+        /**
+         * Stop serving from this lease and hand back its unused tokens.
+         */
+        long close() {
+            return Math.max(0, tokens.getAndSet(CLOSED));
+        }
+
+        void release() {
+            long unused = close();
+            if (unused > 0) {
+                try {
+                    shared.addTokens(unused);
+                } catch (Exception e) {
+                    log.warn("Failed to return {} leased rate limit tokens: {}", unused, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package com.mailit.wrapper.service;
 
+import com.mailit.wrapper.model.AuthenticatedClient;
 import com.mailit.wrapper.model.dto.request.CreateTrackingRequest;
 import com.mailit.wrapper.model.dto.response.BatchCreateResponse;
 import com.mailit.wrapper.model.dto.response.TrackingDetailResponse;
 import com.mailit.wrapper.model.dto.response.TrackingListResponse;
-import com.mailit.wrapper.model.entity.Client;
 
 import java.util.List;
 
@@ -25,7 +25,7 @@ public interface TrackingService {
      * @param request the batch creation request
      * @return response with created and failed trackings
      */
-    BatchCreateResponse createTrackings(Client client, CreateTrackingRequest request);
+    BatchCreateResponse createTrackings(AuthenticatedClient client, CreateTrackingRequest request);
     
     /**
      * Get paginated list of trackings for a client.
@@ -35,7 +35,7 @@ public interface TrackingService {
      * @param pageable pagination parameters
      * @return paginated tracking list
      */
-    TrackingListResponse listTrackings(Client client, String status, Pageable pageable);
+    TrackingListResponse listTrackings(AuthenticatedClient client, String status, Pageable pageable);
     
     /**
      * Get detailed tracking information including event history.
@@ -44,7 +44,7 @@ public interface TrackingService {
      * @param trackingId the wrapper tracking ID
      * @return tracking details with events
      */
-    TrackingDetailResponse getTracking(Client client, String trackingId);
+    TrackingDetailResponse getTracking(AuthenticatedClient client, String trackingId);
 
     /**
      * Get details for multiple trackings in a single request.
@@ -53,16 +53,17 @@ public interface TrackingService {
      * @param trackingIds list of wrapper tracking IDs
      * @return list of detailed tracking info
      */
-    List<TrackingDetailResponse> getBatchTrackingDetails(Client client, List<String> trackingIds);
+    List<TrackingDetailResponse> getBatchTrackingDetails(AuthenticatedClient client, List<String> trackingIds);
     
     /**
      * Soft delete a tracking.
      * 
      * <p>Idempotent - calling delete on an already deleted tracking returns
-     * success without error.</p>
+     * success without error. The tracking is removed from TrackingMore in
+     * the background, on a best-effort basis.</p>
      * 
      * @param client the authenticated client
      * @param trackingId the wrapper tracking ID
      */
-    void deleteTracking(Client client, String trackingId);
+    void deleteTracking(AuthenticatedClient client, String trackingId);
 }
@@ -1,23 +1,28 @@
 package com.mailit.wrapper.service;
 
+import com.mailit.wrapper.client.AsyncTrackingMoreClient;
+import com.mailit.wrapper.client.TrackingMoreBatcher;
 import com.mailit.wrapper.client.TrackingMoreClient;
 import com.mailit.wrapper.exception.ForbiddenException;
 import com.mailit.wrapper.exception.TrackingNotFoundException;
+import com.mailit.wrapper.model.AuthenticatedClient;
 import com.mailit.wrapper.model.WrapperStatus;
 import com.mailit.wrapper.model.dto.request.CreateTrackingRequest;
 import com.mailit.wrapper.model.dto.request.ShipmentDto;
 import com.mailit.wrapper.model.dto.response.*;
-import com.mailit.wrapper.model.entity.Client;
 import com.mailit.wrapper.model.entity.Tracking;
 import com.mailit.wrapper.model.trackingmore.TrackingMoreBatchData;
 import com.mailit.wrapper.model.trackingmore.TrackingMoreResponse;
 import com.mailit.wrapper.model.trackingmore.TrackingMoreShipment;
 import com.mailit.wrapper.model.trackingmore.TrackingMoreTrackingItem;
+import com.mailit.wrapper.repository.ClientRepository;
 import com.mailit.wrapper.repository.TrackingRepository;
+import com.mailit.wrapper.util.RequestContext;
 import com.mailit.wrapper.util.StatusMapper;
 import com.mailit.wrapper.util.TrackingIdGenerator;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -29,11 +34,25 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Implementation of tracking operations.
+ * 
+ * <p>All queries are scoped by {@link AuthenticatedClient#id()}; the client
+ * entity is only referenced (never loaded) when a new tracking is saved.</p>
+ * 
+ * <p>Operations that call TrackingMore are not transactional: each
+ * repository call runs in its own short transaction, so an upstream call
+ * (including its retry backoff) never holds a database connection.</p>
+ * 
+ * <p>Concurrent {@link #getTracking} calls for the same shipment share one
+ * upstream fetch, and fetches for different shipments are merged into
+ * batch calls by {@link TrackingMoreBatcher}.</p>
  */
 @Service
 public class TrackingServiceImpl implements TrackingService {
@@ -41,27 +60,43 @@ public class TrackingServiceImpl implements TrackingService {
     private static final Logger logger = LoggerFactory.getLogger(TrackingServiceImpl.class);
     
     private final TrackingRepository trackingRepository;
+    private final ClientRepository clientRepository;
     private final TrackingMoreClient trackingMoreClient;
+    private final AsyncTrackingMoreClient asyncTrackingMoreClient;
+    private final TrackingMoreBatcher trackingMoreBatcher;
     private final TrackingIdGenerator trackingIdGenerator;
     private final StatusMapper statusMapper;
-    private final ObjectMapper objectMapper;
+    
+    /**
+     * Courier code and tracking number to the upstream fetch in progress.
+     */
+    private final ConcurrentMap<String, CompletableFuture<TrackingMoreTrackingItem>> inFlightFetches =
+            new ConcurrentHashMap<>();
+    private final Counter coalescedFetches;
     
     public TrackingServiceImpl(
             TrackingRepository trackingRepository,
+            ClientRepository clientRepository,
             TrackingMoreClient trackingMoreClient,
+            AsyncTrackingMoreClient asyncTrackingMoreClient,
+            TrackingMoreBatcher trackingMoreBatcher,
             TrackingIdGenerator trackingIdGenerator,
             StatusMapper statusMapper,
-            ObjectMapper objectMapper) {
+            MeterRegistry meterRegistry) {
         this.trackingRepository = trackingRepository;
+        this.clientRepository = clientRepository;
         this.trackingMoreClient = trackingMoreClient;
+        this.asyncTrackingMoreClient = asyncTrackingMoreClient;
+        this.trackingMoreBatcher = trackingMoreBatcher;
         this.trackingIdGenerator = trackingIdGenerator;
         this.statusMapper = statusMapper;
-        this.objectMapper = objectMapper;
+        this.coalescedFetches = Counter.builder("upstream.get.coalesced")
+                .description("Upstream tracking fetches saved by joining an identical in-flight fetch")
+                .register(meterRegistry);
     }
     
     @Override
-    @Transactional
-    public BatchCreateResponse createTrackings(Client client, CreateTrackingRequest request) {
+    public BatchCreateResponse createTrackings(AuthenticatedClient client, CreateTrackingRequest request) {
         List<CreatedTrackingDto> created = new ArrayList<>();
         List<FailedTrackingDto> failed = new ArrayList<>();
         
@@ -69,8 +104,8 @@ public class TrackingServiceImpl implements TrackingService {
         List<TrackingMoreShipment> shipments = new ArrayList<>();
         for (ShipmentDto dto : request.shipments()) {
             // Check for duplicates
-            if (trackingRepository.existsByClientAndTrackingNumberAndCourierCode(
-                    client, dto.trackingNumber(), dto.courier())) {
+            if (trackingRepository.existsByClientIdAndTrackingNumberAndCourierCode(
+                    client.id(), dto.trackingNumber(), dto.courier())) {
                 failed.add(FailedTrackingDto.duplicate(dto.trackingNumber(), dto.courier()));
                 continue;
             }
@@ -90,12 +125,10 @@ public class TrackingServiceImpl implements TrackingService {
         
         try {
             // Call TrackingMore API
-            TrackingMoreResponse response = trackingMoreClient.createBatchTrackings(shipments);
+            TrackingMoreResponse<TrackingMoreBatchData> response = trackingMoreClient.createBatchTrackings(shipments);
             
-            // Parse the batch response data structure
             if (response.getData() != null) {
-                TrackingMoreBatchData batchData = objectMapper.convertValue(
-                        response.getData(), TrackingMoreBatchData.class);
+                TrackingMoreBatchData batchData = response.getData();
                 
                 // Process successful trackings
                 if (batchData.getSuccess() != null) {
@@ -153,7 +186,7 @@ public class TrackingServiceImpl implements TrackingService {
     /**
      * Saves a tracking to the database and returns the created DTO.
      */
-    private CreatedTrackingDto saveTracking(Client client, CreateTrackingRequest request,
+    private CreatedTrackingDto saveTracking(AuthenticatedClient client, CreateTrackingRequest request,
             String trackingNumber, String courierCode, String trackingmoreId) {
         String trackingId = trackingIdGenerator.generate();
         
@@ -165,7 +198,7 @@ public class TrackingServiceImpl implements TrackingService {
         // Save to database
         Tracking tracking = new Tracking();
         tracking.setTrackingId(trackingId);
-        tracking.setClient(client);
+        tracking.setClient(clientRepository.getReferenceById(client.id()));
         tracking.setTrackingNumber(trackingNumber);
         tracking.setCourierCode(courierCode);
         tracking.setTrackingmoreId(trackingmoreId);
@@ -177,21 +210,21 @@ public class TrackingServiceImpl implements TrackingService {
         });
         
         trackingRepository.save(tracking);
-        logger.info("Created tracking {} for client {}", trackingId, client.getId());
+        logger.info("Created tracking {} for client {}", trackingId, client.id());
         
         return CreatedTrackingDto.created(trackingId, trackingNumber);
     }
     
     @Override
     @Transactional(readOnly = true)
-    public TrackingListResponse listTrackings(Client client, String status, Pageable pageable) {
+    public TrackingListResponse listTrackings(AuthenticatedClient client, String status, Pageable pageable) {
         Page<Tracking> page;
         
         if (status != null && !status.isEmpty()) {
             WrapperStatus wrapperStatus = WrapperStatus.valueOf(status.toUpperCase());
-            page = trackingRepository.findByClientAndStatus(client, wrapperStatus, pageable);
+            page = trackingRepository.findByClientIdAndStatus(client.id(), wrapperStatus, pageable);
         } else {
-            page = trackingRepository.findByClient(client, pageable);
+            page = trackingRepository.findByClientId(client.id(), pageable);
         }
         
         List<TrackingSummaryDto> trackings = page.getContent().stream()
@@ -209,8 +242,7 @@ public class TrackingServiceImpl implements TrackingService {
     }
     
     @Override
-    @Transactional(readOnly = true)
-    public TrackingDetailResponse getTracking(Client client, String trackingId) {
+    public TrackingDetailResponse getTracking(AuthenticatedClient client, String trackingId) {
         Tracking tracking = findTrackingForClient(client, trackingId);
         
         // Fetch latest events from TrackingMore
@@ -218,8 +250,7 @@ public class TrackingServiceImpl implements TrackingService {
         TrackingMoreTrackingItem upstreamTracking = null;
         
         try {
-            upstreamTracking = trackingMoreClient.getTracking(
-                    tracking.getTrackingNumber(), tracking.getCourierCode());
+            upstreamTracking = fetchUpstreamTracking(tracking.getTrackingNumber(), tracking.getCourierCode());
             
             if (upstreamTracking != null) {
                 // Update status if changed
@@ -265,10 +296,9 @@ public class TrackingServiceImpl implements TrackingService {
     }
     
     @Override
-    @Transactional
-    public List<TrackingDetailResponse> getBatchTrackingDetails(Client client, List<String> trackingIds) {
+    public List<TrackingDetailResponse> getBatchTrackingDetails(AuthenticatedClient client, List<String> trackingIds) {
         // 1. Find all trackings
-        List<Tracking> trackings = trackingRepository.findByClientAndTrackingIdIn(client, trackingIds);
+        List<Tracking> trackings = trackingRepository.findByClientIdAndTrackingIdIn(client.id(), trackingIds);
         
         if (trackings.isEmpty()) {
             return List.of();
@@ -292,6 +322,7 @@ public class TrackingServiceImpl implements TrackingService {
                 
         // 5. Build response and update statuses
         List<TrackingDetailResponse> responses = new ArrayList<>();
+        List<Tracking> changed = new ArrayList<>();
         
         for (Tracking tracking : trackings) {
             TrackingMoreTrackingItem upstream = upstreamMap.get(tracking.getTrackingNumber());
@@ -302,7 +333,7 @@ public class TrackingServiceImpl implements TrackingService {
                 WrapperStatus newStatus = statusMapper.map(upstream.getDeliveryStatus());
                 if (newStatus != tracking.getStatus()) {
                     tracking.setStatus(newStatus);
-                    trackingRepository.save(tracking);
+                    changed.add(tracking);
                 }
                 
                 // Map events
@@ -336,12 +367,16 @@ public class TrackingServiceImpl implements TrackingService {
             ));
         }
         
+        // Persist all status changes in one transaction
+        if (!changed.isEmpty()) {
+            trackingRepository.saveAll(changed);
+        }
+        
         return responses;
     }
 
     @Override
-    @Transactional
-    public void deleteTracking(Client client, String trackingId) {
+    public void deleteTracking(AuthenticatedClient client, String trackingId) {
         Optional<Tracking> optionalTracking = trackingRepository.findByTrackingId(trackingId);
         
         if (optionalTracking.isEmpty()) {
@@ -353,7 +388,7 @@ public class TrackingServiceImpl implements TrackingService {
         Tracking tracking = optionalTracking.get();
         
         // Verify ownership
-        if (!tracking.getClient().getId().equals(client.getId())) {
+        if (!tracking.getClient().getId().equals(client.id())) {
             throw new ForbiddenException("Access denied to tracking: " + trackingId);
         }
         
@@ -361,21 +396,49 @@ public class TrackingServiceImpl implements TrackingService {
         tracking.softDelete();
         trackingRepository.save(tracking);
         
-        // Best effort delete from TrackingMore
-        try {
-            trackingMoreClient.deleteTracking(tracking.getTrackingNumber(), tracking.getCourierCode());
-        } catch (Exception e) {
-            logger.warn("Failed to delete tracking from TrackingMore: {}", e.getMessage());
+        // Best effort delete from TrackingMore; the response does not wait for it
+        asyncTrackingMoreClient.deleteTracking(tracking.getTrackingNumber(), tracking.getCourierCode())
+                .whenComplete((deleted, e) -> {
+                    if (e != null) {
+                        logger.warn("Failed to delete tracking {} from TrackingMore: {}", trackingId, e.getMessage());
+                    }
+                });
+        
+        logger.info("Soft deleted tracking {} for client {}", trackingId, client.id());
+    }
+    
+    /**
+     * Fetch a tracking from TrackingMore, joining an identical fetch if one
+     * is already in flight. The caller that starts the fetch runs it; the
+     * others wait for its result or its exception, up to their own deadline.
+     */
+    private TrackingMoreTrackingItem fetchUpstreamTracking(String trackingNumber, String courierCode) {
+        String key = courierCode + "|" + trackingNumber;
+        CompletableFuture<TrackingMoreTrackingItem> created = new CompletableFuture<>();
+        CompletableFuture<TrackingMoreTrackingItem> existing = inFlightFetches.putIfAbsent(key, created);
+        
+        if (existing != null) {
+            coalescedFetches.increment();
+            return RequestContext.await(existing);
         }
         
-        logger.info("Soft deleted tracking {} for client {}", trackingId, client.getId());
+        try {
+            TrackingMoreTrackingItem item = trackingMoreBatcher.getTracking(trackingNumber, courierCode);
+            created.complete(item);
+            return item;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightFetches.remove(key, created);
+        }
     }
     
-    private Tracking findTrackingForClient(Client client, String trackingId) {
+    private Tracking findTrackingForClient(AuthenticatedClient client, String trackingId) {
         Tracking tracking = trackingRepository.findByTrackingId(trackingId)
                 .orElseThrow(() -> new TrackingNotFoundException(trackingId));
         
-        if (!tracking.getClient().getId().equals(client.getId())) {
+        if (!tracking.getClient().getId().equals(client.id())) {
             throw new ForbiddenException("Access denied to tracking: " + trackingId);
         }
         
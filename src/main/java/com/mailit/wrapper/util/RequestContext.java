@@ -0,0 +1,159 @@
+package com.mailit.wrapper.util;
+
+import com.mailit.wrapper.exception.DeadlineExceededException;
+import com.mailit.wrapper.model.AuthenticatedClient;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Per-request state for code that is not handed the servlet request,
+ * such as the upstream client.
+ * 
+ * <p>Populated by {@link com.mailit.wrapper.config.ApiKeyAuthFilter} once the
+ * caller is authenticated and cleared when the request completes. The
+ * request's deadline is set by {@link com.mailit.wrapper.config.RequestDeadlineFilter}.</p>
+ */
+public final class RequestContext {
+
+    private static final ThreadLocal<AuthenticatedClient> CLIENT = new ThreadLocal<>();
+
+    /**
+     * Deadline in {@link System#nanoTime()} terms, if the request has one.
+     */
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestContext() {
+    }
+
+    /**
+     * Bind the authenticated client to the current thread.
+     * 
+     * @param client the authenticated client
+     */
+    public static void setClient(AuthenticatedClient client) {
+        CLIENT.set(client);
+    }
+
+    /**
+     * Get the client of the request running on this thread.
+     * 
+     * @return the client, or null outside an authenticated request
+     */
+    public static AuthenticatedClient client() {
+        return CLIENT.get();
+    }
+
+    /**
+     * Set the deadline of the request running on this thread.
+     * 
+     * @param deadlineNanos the deadline as a {@link System#nanoTime()} value,
+     *                      or null for none
+     */
+    public static void setDeadline(Long deadlineNanos) {
+        if (deadlineNanos != null) {
+            DEADLINE.set(deadlineNanos);
+        } else {
+            DEADLINE.remove();
+        }
+    }
+
+    /**
+     * Get the deadline of the request running on this thread.
+     * 
+     * @return the deadline as a {@link System#nanoTime()} value, or null if none
+     */
+    public static Long deadline() {
+        return DEADLINE.get();
+    }
+
+    /**
+     * Time left until this thread's request deadline.
+     * 
+     * @return remaining time, negative once passed, or null if there is no deadline
+     */
+    public static Duration remaining() {
+        Long deadline = DEADLINE.get();
+        return deadline != null ? Duration.ofNanos(deadline - System.nanoTime()) : null;
+    }
+
+    /**
+     * Wait for a result shared with other requests, but no longer than this
+     * request's deadline. Giving up does not cancel the shared future.
+     * 
+     * @param future the result to wait for
+     * @return the result
+     * @throws DeadlineExceededException if the deadline passes first
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            Duration remaining = remaining();
+            return remaining == null ? future.get() : future.get(remaining.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Request deadline passed while waiting for tracking data");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException("Interrupted while waiting for tracking data", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Clear all state for the current thread.
+     */
+    public static void clear() {
+        CLIENT.remove();
+        DEADLINE.remove();
+    }
+
+    /**
+     * Wrap a task so it runs with this thread's client, deadline and MDC
+     * (correlation ID, key prefix) on whichever thread executes it.
+     * 
+     * <p>The executing thread's own context is restored afterwards, so the
+     * task may also run on the request thread itself, e.g. under a
+     * caller-runs rejection policy.</p>
+     * 
+     * @param task the task to hand to another thread
+     * @return a task that installs the captured context around {@code task}
+     */
+    public static Runnable propagate(Runnable task) {
+        AuthenticatedClient client = CLIENT.get();
+        Long deadline = DEADLINE.get();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        return () -> {
+            AuthenticatedClient previousClient = CLIENT.get();
+            Long previousDeadline = DEADLINE.get();
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            install(client, deadline, mdc);
+            try {
+                task.run();
+            } finally {
+                install(previousClient, previousDeadline, previousMdc);
+            }
+        };
+    }
+
+    private static void install(AuthenticatedClient client, Long deadline, Map<String, String> mdc) {
+        if (client != null) {
+            CLIENT.set(client);
+        } else {
+            CLIENT.remove();
+        }
+        setDeadline(deadline);
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        } else {
+            MDC.clear();
+        }
+    }
+}
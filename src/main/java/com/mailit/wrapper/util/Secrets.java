@@ -0,0 +1,45 @@
+package com.mailit.wrapper.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Startup checks for configured signing and hashing secrets.
+ */
+public final class Secrets {
+
+    /**
+     * Minimum secret length, matching the HMAC-SHA256 output size.
+     */
+    public static final int MIN_BYTES = 32;
+
+    private static final Set<String> PLACEHOLDERS = Set.of(
+            "change-me", "changeme", "change_me", "replace-me", "replaceme",
+            "secret", "password", "pepper", "example", "todo", "xxx");
+
+    private Secrets() {
+    }
+
+    /**
+     * Reject a configured secret that is a known placeholder or too short
+     * to resist guessing. Blank values are left to the caller's fallback.
+     *
+     * @param property the configuration property, for the error message
+     * @param value the configured value
+     * @throws IllegalStateException if the value is a placeholder or shorter than {@link #MIN_BYTES}
+     */
+    public static void requireStrong(String property, String value) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        if (PLACEHOLDERS.contains(value.trim().toLowerCase(Locale.ROOT))) {
+            throw new IllegalStateException(property + " is set to a placeholder value; "
+                    + "generate one with: openssl rand -base64 32");
+        }
+        if (value.getBytes(StandardCharsets.UTF_8).length < MIN_BYTES) {
+            throw new IllegalStateException(property + " must be at least " + MIN_BYTES + " bytes; "
+                    + "generate one with: openssl rand -base64 32");
+        }
+    }
+}
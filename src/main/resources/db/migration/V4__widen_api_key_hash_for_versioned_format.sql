@@ -0,0 +1,10 @@
+-- =====================================================
+-- V4: Versioned API key hash format
+-- =====================================================
+-- api_key_hash now holds either a legacy bcrypt hash ($2a$12$..., 60 chars)
+-- or a peppered HMAC-SHA256 hash ($hmac-sha256$<base64url>, 56 chars).
+-- Legacy hashes are upgraded in place on the next successful authentication.
+
+ALTER TABLE clients ALTER COLUMN api_key_hash SET DATA TYPE VARCHAR(128);
+
+COMMENT ON COLUMN clients.api_key_hash IS 'Versioned hash of full API key: $hmac-sha256$... (peppered HMAC) or legacy bcrypt';
@@ -0,0 +1,10 @@
+-- =====================================================
+-- V5: Add session token revocation epoch
+-- =====================================================
+-- Session tokens embed the epoch they were issued under. Bumping the epoch
+-- (revoke, rotate, plan or status change) invalidates all outstanding tokens.
+
+ALTER TABLE clients
+ADD COLUMN token_epoch BIGINT NOT NULL DEFAULT 0;
+
+COMMENT ON COLUMN clients.token_epoch IS 'Session token revocation epoch - bumped to invalidate outstanding tokens';
@@ -0,0 +1,16 @@
+-- =====================================================
+-- V6: Create rate limit buckets table
+-- =====================================================
+-- Shared Bucket4j state for multi-instance deployments
+-- (rate-limiting.backend = jdbc). One row per client; updates are
+-- compare-and-swap on the serialized state, so no row locks are held.
+
+CREATE TABLE rate_limit_buckets (
+    bucket_key BIGINT PRIMARY KEY,
+    state BYTEA NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON TABLE rate_limit_buckets IS 'Distributed rate limit bucket state (Bucket4j)';
+COMMENT ON COLUMN rate_limit_buckets.bucket_key IS 'Client ID the bucket belongs to';
+COMMENT ON COLUMN rate_limit_buckets.state IS 'Serialized Bucket4j RemoteBucketState';
@@ -0,0 +1,82 @@
+package com.mailit.wrapper.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamConcurrencyLimiterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UpstreamConcurrencyLimiter limiter =
+            new UpstreamConcurrencyLimiter(meterRegistry, true, 10, 2, 50, 2.0, 0.9, 100, 100, 500, 10, 20);
+
+    @Test
+    void slowEndpointIsJudgedAgainstItsOwnBaseline() {
+        calls("delete", 200, 10);
+        calls("batch-get", 200, 400);
+
+        assertThat(limit()).isGreaterThanOrEqualTo(10);
+        assertThat(baseline("delete")).isEqualTo(10);
+        assertThat(baseline("batch-get")).isEqualTo(400);
+    }
+
+    @Test
+    void baselineIgnoresASingleFastOutlier() {
+        calls("get", 1, 1);
+        calls("get", 100, 50);
+
+        assertThat(baseline("get")).isEqualTo(50);
+        assertThat(limit()).isGreaterThanOrEqualTo(10);
+    }
+
+    @Test
+    void instantClientErrorsAreNotLatencySamples() {
+        calls("get", 50, 50);
+        for (int i = 0; i < 500; i++) {
+            limiter.acquire();
+            limiter.releaseIgnored();
+        }
+        calls("get", 50, 50);
+
+        assertThat(baseline("get")).isEqualTo(50);
+        assertThat(limit()).isGreaterThanOrEqualTo(10);
+    }
+
+    @Test
+    void latencyAboveToleranceLowersTheLimit() {
+        calls("get", 50, 50);
+        calls("get", 200, 150);
+
+        assertThat(limit()).isLessThan(10);
+    }
+
+    @Test
+    void failuresLowerTheLimitWithoutALatencySample() {
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.releaseFailed();
+        }
+
+        assertThat(limit()).isLessThan(10);
+        assertThat(meterRegistry.find("upstream.concurrency.baseline").gauge()).isNull();
+    }
+
+    private void calls(String endpoint, int count, long millis) {
+        for (int i = 0; i < count; i++) {
+            limiter.acquire();
+            limiter.release(endpoint, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    private double limit() {
+        return meterRegistry.get("upstream.concurrency.limit").gauge().value();
+    }
+
+    private double baseline(String endpoint) {
+        return meterRegistry.get("upstream.concurrency.baseline").tag("endpoint", endpoint).gauge().value();
+    }
+}
@@ -0,0 +1,106 @@
+package com.mailit.wrapper.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.RateLimitPlan;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientBulkheadFilterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ClientBulkheadFilter filter = new ClientBulkheadFilter(new ObjectMapper(), meterRegistry, 0);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch finish = new CountDownLatch(1);
+
+    @AfterEach
+    void stop() {
+        finish.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void planUpgradeRaisesTheCapForTheNextRequest() throws Exception {
+        List<Future<Integer>> held = hold(client(RateLimitPlan.FREE), RateLimitPlan.FREE.getMaxConcurrent());
+
+        assertThat(send(client(RateLimitPlan.FREE))).isEqualTo(429);
+        assertThat(send(client(RateLimitPlan.PRO))).isEqualTo(200);
+
+        finish.countDown();
+        for (Future<Integer> request : held) {
+            assertThat(request.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void planDowngradeDrainsRequestsOverTheNewCap() throws Exception {
+        List<Future<Integer>> held = hold(client(RateLimitPlan.STARTER), RateLimitPlan.STARTER.getMaxConcurrent());
+
+        assertThat(send(client(RateLimitPlan.FREE))).isEqualTo(429);
+
+        finish.countDown();
+        for (Future<Integer> request : held) {
+            assertThat(request.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void idleClientsLeaveNoEntryBehind() throws Exception {
+        assertThat(send(client(RateLimitPlan.FREE))).isEqualTo(200);
+        assertThat(meterRegistry.get("bulkhead.clients").gauge().value()).isZero();
+    }
+
+    private static AuthenticatedClient client(RateLimitPlan plan) {
+        return new AuthenticatedClient(7L, "bulkhead", "sk_test_bulk", plan, null);
+    }
+
+    /**
+     * Start requests that stay in flight until the test finishes.
+     */
+    private List<Future<Integer>> hold(AuthenticatedClient client, int count) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(count);
+        List<Future<Integer>> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(executor.submit(() -> {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                filter.doFilter(request(client), response, (req, res) -> {
+                    started.countDown();
+                    try {
+                        finish.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                return response.getStatus();
+            }));
+        }
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        return requests;
+    }
+
+    private int send(AuthenticatedClient client) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(client), response, (req, res) -> { });
+        return response.getStatus();
+    }
+
+    private static MockHttpServletRequest request(AuthenticatedClient client) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/trackings");
+        request.setAttribute(ApiKeyAuthFilter.CLIENT_ATTRIBUTE, client);
+        return request;
+    }
+}
@@ -0,0 +1,133 @@
+package com.mailit.wrapper.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mailit.wrapper.model.trackingmore.TrackingMoreResponse;
+import com.mailit.wrapper.model.trackingmore.TrackingMoreTrackingItem;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Decoding cost of a 40-item {@code /trackings/get} body: the former two
+ * passes ({@code Object} data, then {@code convertValue}) against the
+ * typed single pass the client uses now.
+ */
+class TrackingMoreDecodeBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TrackingMoreDecodeBenchmarkTest.class);
+
+    private static final int ITEMS = 40;
+    private static final int CHECKPOINTS = 25;
+    private static final TypeReference<TrackingMoreResponse<List<TrackingMoreTrackingItem>>> TYPED =
+            new TypeReference<>() {};
+    private static final TypeReference<List<TrackingMoreTrackingItem>> ITEM_LIST = new TypeReference<>() {};
+
+    private final ObjectMapper mapper = TrackingMoreConfig.lenientMapper(new ObjectMapper());
+
+    @Test
+    void typedSinglePassAllocatesLessAndDecodesFasterThanTwoPasses() throws Exception {
+        byte[] body = mapper.writeValueAsBytes(trackingsGetBody());
+        assertThat(twoPass(body)).isEqualTo(typed(body));
+
+        Measurement twoPass = measure(() -> twoPass(body));
+        Measurement typed = measure(() -> typed(body));
+
+        log.info("Decoding {} items ({} KB): two-pass {} us/op, {} KB/op; typed {} us/op, {} KB/op",
+                ITEMS, body.length / 1024, twoPass.micros(), twoPass.kilobytes(), typed.micros(), typed.kilobytes());
+        // The two-pass path builds a full map tree before the typed objects
+        assertThat(typed.bytes() * 1.3).isLessThan(twoPass.bytes());
+        assertThat(typed.nanos()).isLessThan(twoPass.nanos());
+    }
+
+    private List<TrackingMoreTrackingItem> twoPass(byte[] body) throws Exception {
+        TrackingMoreResponse<?> response = mapper.readValue(body, TrackingMoreResponse.class);
+        return mapper.convertValue(response.getData(), ITEM_LIST);
+    }
+
+    private List<TrackingMoreTrackingItem> typed(byte[] body) throws Exception {
+        return mapper.readValue(body, TYPED).getData();
+    }
+
+    private static Measurement measure(Decode decode) throws Exception {
+        for (int i = 0; i < 500; i++) {
+            decode.run();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int iterations = 1000;
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            decode.run();
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new Measurement(nanos / iterations, bytes / iterations);
+    }
+
+    private ObjectNode trackingsGetBody() {
+        ObjectNode body = mapper.createObjectNode();
+        body.putObject("meta").put("code", 200).put("message", "Request response is successful");
+        ArrayNode data = body.putArray("data");
+        for (int i = 0; i < ITEMS; i++) {
+            ObjectNode item = data.addObject()
+                    .put("id", "9a1339b7c2a8e2d52b2f4d5fe3c6a" + i)
+                    .put("tracking_number", "YT21010000000" + i)
+                    .put("courier_code", "yunexpress")
+                    .put("delivery_status", "transit")
+                    .put("substatus", "transit001")
+                    .put("order_id", "ORD-" + i)
+                    .put("origin_country", "CN")
+                    .put("destination_country", "US")
+                    .put("latest_event", "Departed from facility, Los Angeles")
+                    .put("latest_checkpoint_time", "2026-10-12T08:15:00+08:00")
+                    .put("transit_time", 7)
+                    .put("created_at", "2026-10-05T10:00:00+00:00")
+                    .put("update_at", "2026-10-12T08:20:00+00:00");
+            ObjectNode origin = item.putObject("origin_info")
+                    .put("courier_code", "yunexpress")
+                    .put("courier_phone", "4000-2621-26")
+                    .put("weblink", "https://www.yuntrack.com/")
+                    .put("tracking_link", "https://www.yuntrack.com/track/YT21010000000" + i);
+            ArrayNode trackinfo = origin.putArray("trackinfo");
+            for (int c = 0; c < CHECKPOINTS; c++) {
+                trackinfo.addObject()
+                        .put("checkpoint_date", "2026-10-" + (10 + c % 18) + "T0" + (c % 10) + ":00:00+08:00")
+                        .put("checkpoint_delivery_status", "transit")
+                        .put("checkpoint_delivery_substatus", "transit001")
+                        .put("tracking_detail", "Shipment processed at sorting center, scan " + c)
+                        .put("location", "Shenzhen, Guangdong")
+                        .put("country_iso2", "CN")
+                        .put("state", "Guangdong")
+                        .put("city", "Shenzhen")
+                        .put("zip", "518000");
+            }
+            item.putObject("destination_info").put("courier_code", "usps").putArray("trackinfo");
+        }
+        return body;
+    }
+
+    @FunctionalInterface
+    private interface Decode {
+        Object run() throws Exception;
+    }
+
+    private record Measurement(long nanos, long bytes) {
+
+        long micros() {
+            return nanos / 1000;
+        }
+
+        long kilobytes() {
+            return bytes / 1024;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mailit.wrapper.exception;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitExceptionTest {
+
+    @Test
+    void subSecondRefillAsksForAtLeastOneSecond() {
+        RateLimitException exception = new RateLimitException(100, 0, Instant.now().plusMillis(200));
+
+        assertThat(exception.getRetryAfterSeconds()).isEqualTo(1);
+    }
+
+    @Test
+    void partialSecondsRoundUp() {
+        RateLimitException exception = new RateLimitException(100, 0, Instant.now().plus(Duration.ofMillis(2_500)));
+
+        assertThat(exception.getRetryAfterSeconds()).isEqualTo(3);
+    }
+
+    @Test
+    void passedResetStillAsksForOneSecond() {
+        RateLimitException exception = new RateLimitException(100, Instant.now().minusSeconds(5));
+
+        assertThat(exception.getRetryAfterSeconds()).isEqualTo(1);
+    }
+}
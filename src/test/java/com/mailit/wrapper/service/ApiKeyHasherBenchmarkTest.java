@@ -0,0 +1,50 @@
+package com.mailit.wrapper.service;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-request API key verification cost: legacy bcrypt (cost 12) hashes
+ * against peppered HMAC-SHA256 hashes.
+ */
+class ApiKeyHasherBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiKeyHasherBenchmarkTest.class);
+
+    // Format of ClientServiceImpl: sk_live_<8-char prefix>_<32-char secret>
+    private static final String API_KEY = "sk_live_q3x9k2mw_Vh7Rk2pX9sLq4TzB8nWc6yDf1GjA5eUo";
+    private static final String PEPPER = "benchmark-pepper-0123456789abcdef0123";
+
+    @Test
+    void hmacVerificationIsOrdersOfMagnitudeCheaperThanBcrypt() {
+        ApiKeyHasher hasher = new ApiKeyHasher(PEPPER);
+        ApiKeyHasher legacyHasher = new ApiKeyHasher("");
+
+        String bcryptHash = legacyHasher.hash(API_KEY);
+        String hmacHash = hasher.hash(API_KEY);
+        assertThat(hasher.isSlow(bcryptHash)).isTrue();
+        assertThat(hasher.isSlow(hmacHash)).isFalse();
+
+        double bcryptMicros = averageMicros(hasher, bcryptHash, 1, 5);
+        double hmacMicros = averageMicros(hasher, hmacHash, 10_000, 50_000);
+
+        log.info("API key verification: bcrypt {} us, hmac {} us ({}x)", Math.round(bcryptMicros),
+                String.format("%.2f", hmacMicros), Math.round(bcryptMicros / hmacMicros));
+        // bcrypt at cost 12 is ~10^5 times slower; 1000x leaves ample headroom for noisy hosts
+        assertThat(hmacMicros * 1000).isLessThan(bcryptMicros);
+    }
+
+    private static double averageMicros(ApiKeyHasher hasher, String storedHash, int warmup, int iterations) {
+        for (int i = 0; i < warmup; i++) {
+            assertThat(hasher.matches(API_KEY, storedHash)).isTrue();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            assertThat(hasher.matches(API_KEY, storedHash)).isTrue();
+        }
+        return (System.nanoTime() - start) / 1000.0 / iterations;
+    }
+}
@@ -0,0 +1,57 @@
+package com.mailit.wrapper.service;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientBucketStoreTest {
+
+    private static final int CLIENTS = 8;
+    private static final long QUOTA = 1000;
+
+    @Test
+    void evictionUnderConcurrentLoadNeverResetsAQuota() throws Exception {
+        // Room for two live buckets, so nearly every lookup evicts another client
+        ClientBucketStore store = new ClientBucketStore(null, 1, 2, Duration.ofMinutes(5), 1000,
+                new SimpleMeterRegistry());
+        BucketConfiguration configuration = BucketConfiguration.builder()
+                .addLimit(Bandwidth.classic(QUOTA, Refill.intervally(QUOTA, Duration.ofDays(1))))
+                .build();
+
+        AtomicLongArray admitted = new AtomicLongArray(CLIENTS);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            int offset = t;
+            workers.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    int clientId = (i + offset) % CLIENTS;
+                    if (store.apply((long) clientId, () -> configuration, bucket -> bucket.tryConsume(1))) {
+                        admitted.incrementAndGet(clientId);
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (int clientId = 0; clientId < CLIENTS; clientId++) {
+            assertThat(admitted.get(clientId)).as("client %d", clientId).isEqualTo(QUOTA);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.mailit.wrapper.service;
+
+import com.mailit.wrapper.exception.RateLimitException;
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.RateLimitPlan;
+import com.mailit.wrapper.repository.JdbcBucketProxyManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Accuracy of leased rate limiting with several nodes sharing one JDBC
+ * bucket table. Each node is a separate {@link RateLimitService} with its
+ * own lease pool and proxy manager, as in separate JVMs.
+ */
+class RateLimitServiceLeaseTest {
+
+    private static final AuthenticatedClient FREE_CLIENT =
+            new AuthenticatedClient(1L, "free", "sk_test_free", RateLimitPlan.FREE, null);
+    private static final AuthenticatedClient PRO_CLIENT =
+            new AuthenticatedClient(2L, "pro", "sk_test_pro", RateLimitPlan.PRO, null);
+
+    private DriverManagerDataSource dataSource;
+    private final List<RateLimitService> nodes = new ArrayList<>();
+
+    @BeforeEach
+    void createBucketTable() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:lease_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V6__create_rate_limit_buckets_table.sql"))
+                .execute(dataSource);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        nodes.forEach(RateLimitService::releaseLeases);
+        new JdbcTemplate(dataSource).execute("SHUTDOWN");
+    }
+
+    @Test
+    void concurrentNodesNeverAdmitMoreThanTheDailyQuota() throws Exception {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("rate-limiting.plans.free.refill", "intervally");
+        List<RateLimitService> cluster = List.of(
+                node(environment, new SimpleMeterRegistry()),
+                node(environment, new SimpleMeterRegistry()),
+                node(environment, new SimpleMeterRegistry()));
+
+        AtomicLong admitted = new AtomicLong();
+        hammer(cluster, FREE_CLIENT, 4, 60, admitted);
+
+        // Unused leased tokens go back to the shared bucket; none may be lost or created
+        cluster.forEach(RateLimitService::releaseLeases);
+        long remaining = node(environment, new SimpleMeterRegistry()).getRemainingRequests(FREE_CLIENT);
+
+        assertThat(admitted.get()).isLessThanOrEqualTo(RateLimitPlan.FREE.getRequestsPerDay());
+        assertThat(admitted.get() + remaining).isEqualTo(RateLimitPlan.FREE.getRequestsPerDay());
+    }
+
+    @Test
+    void leasesFillThePerSecondBurstInsteadOfFallingBackToSingleTokens() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("rate-limiting.plans.pro.refill", "intervally")
+                .withProperty("rate-limiting.plans.pro.per-second", "100");
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RateLimitService service = node(environment, meterRegistry);
+
+        for (int i = 0; i < 90; i++) {
+            service.checkRateLimit(PRO_CLIENT, 1);
+        }
+
+        // One lease sized to the 100/s burst covers every request
+        assertThat(meterRegistry.counter("rate.limit.lease.acquisitions").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("rate.limit.lease.hits").count()).isEqualTo(89);
+    }
+
+    @Test
+    void leasedTokensStayWithinThePerSecondLimitAcrossNodes() throws Exception {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("rate-limiting.plans.pro.refill", "intervally")
+                .withProperty("rate-limiting.plans.pro.per-second", "100");
+        List<RateLimitService> cluster = List.of(
+                node(environment, new SimpleMeterRegistry()),
+                node(environment, new SimpleMeterRegistry()),
+                node(environment, new SimpleMeterRegistry()));
+
+        AtomicLong admitted = new AtomicLong();
+        long start = System.nanoTime();
+        hammer(cluster, PRO_CLIENT, 4, 50, admitted);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        // Every admitted request was paid for from the shared bucket, whose
+        // per-second bandwidth allows one burst plus its refill
+        assertThat((double) admitted.get()).isLessThanOrEqualTo(100 + Math.ceil(100 * elapsedSeconds));
+    }
+
+    private RateLimitService node(MockEnvironment environment, MeterRegistry meterRegistry) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("jdbcBucketProxyManager",
+                new JdbcBucketProxyManager(new JdbcTemplate(dataSource)));
+        RateLimitService node = new RateLimitService(beanFactory.getBeanProvider(JdbcBucketProxyManager.class),
+                meterRegistry, environment, true, 0.05, 100, 5, 10_000, 50_000, 60, 200_000);
+        nodes.add(node);
+        return node;
+    }
+
+    private static void hammer(List<RateLimitService> cluster, AuthenticatedClient client,
+            int threadsPerNode, int requestsPerThread, AtomicLong admitted) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(cluster.size() * threadsPerNode);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (RateLimitService node : cluster) {
+            for (int t = 0; t < threadsPerNode; t++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        try {
+                            node.checkRateLimit(client, 1);
+                            admitted.incrementAndGet();
+                        } catch (RateLimitException e) {
+                            // Expected once the quota or burst is used up
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,139 @@
+package com.mailit.wrapper.service;
+
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.RateLimitPlan;
+import com.mailit.wrapper.repository.JdbcBucketProxyManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Plan changes reach the client's stored bucket, for both backends.
+ */
+class RateLimitServicePlanChangeTest {
+
+    private static final long CLIENT_ID = 5L;
+
+    private final MockEnvironment environment = new MockEnvironment()
+            .withProperty("rate-limiting.plans.free.refill", "intervally")
+            .withProperty("rate-limiting.plans.starter.refill", "intervally")
+            .withProperty("rate-limiting.plans.pro.refill", "intervally");
+
+    private DriverManagerDataSource dataSource;
+    private final List<RateLimitService> nodes = new ArrayList<>();
+
+    @BeforeEach
+    void createBucketTable() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:plan_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V6__create_rate_limit_buckets_table.sql"))
+                .execute(dataSource);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        nodes.forEach(RateLimitService::releaseLeases);
+        new JdbcTemplate(dataSource).execute("SHUTDOWN");
+    }
+
+    @Test
+    void upgradeAddsTheNewCapacityToAnInMemoryBucket() {
+        RateLimitService service = memoryNode(50_000, new SimpleMeterRegistry());
+        consume(service, client(RateLimitPlan.FREE), 60);
+
+        service.changePlan(CLIENT_ID, RateLimitPlan.PRO);
+
+        assertThat(service.getRemainingRequests(client(RateLimitPlan.PRO))).isEqualTo(10_000 - 60);
+    }
+
+    @Test
+    void downgradeCapsAnInMemoryBucketAtTheNewCapacity() {
+        RateLimitService service = memoryNode(50_000, new SimpleMeterRegistry());
+        consume(service, client(RateLimitPlan.STARTER), 50);
+
+        service.changePlan(CLIENT_ID, RateLimitPlan.FREE);
+
+        assertThat(service.getRemainingRequests(client(RateLimitPlan.FREE))).isEqualTo(100);
+    }
+
+    @Test
+    void snapshottedBucketIsReconfiguredWhenRestored() throws Exception {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RateLimitService service = memoryNode(1, meterRegistry);
+        consume(service, client(RateLimitPlan.FREE), 60);
+
+        // Push the client out of the single live slot and wait for its snapshot
+        AuthenticatedClient other = new AuthenticatedClient(CLIENT_ID + 1, "other", "sk_live_other",
+                RateLimitPlan.FREE, null);
+        for (int i = 0; i < 200 && snapshots(meterRegistry) == 0; i++) {
+            service.checkRateLimit(other, 1);
+            Thread.sleep(10);
+        }
+        assertThat(snapshots(meterRegistry)).isEqualTo(1);
+
+        service.changePlan(CLIENT_ID, RateLimitPlan.PRO);
+
+        assertThat(service.getRemainingRequests(client(RateLimitPlan.PRO))).isEqualTo(10_000 - 60);
+    }
+
+    @Test
+    void sharedBucketIsReconfiguredForEveryNodeAndRestart() {
+        RateLimitService first = jdbcNode();
+        RateLimitService second = jdbcNode();
+        consume(first, client(RateLimitPlan.FREE), 30);
+        consume(second, client(RateLimitPlan.FREE), 30);
+
+        first.changePlan(CLIENT_ID, RateLimitPlan.PRO);
+        // The other node's lease returns its unused tokens when it expires
+        second.releaseLeases();
+
+        assertThat(jdbcNode().getRemainingRequests(client(RateLimitPlan.PRO))).isEqualTo(10_000 - 60);
+        // A node that still has the old plan cached does not revert the layout
+        assertThat(jdbcNode().getRemainingRequests(client(RateLimitPlan.FREE))).isEqualTo(10_000 - 60);
+    }
+
+    private static AuthenticatedClient client(RateLimitPlan plan) {
+        return new AuthenticatedClient(CLIENT_ID, "plan", "sk_live_plan0001", plan, null);
+    }
+
+    private static void consume(RateLimitService service, AuthenticatedClient client, int requests) {
+        for (int i = 0; i < requests; i++) {
+            service.checkRateLimit(client, 1);
+        }
+    }
+
+    private static double snapshots(MeterRegistry meterRegistry) {
+        return meterRegistry.get("rate.limit.buckets").tag("tier", "snapshot").gauge().value();
+    }
+
+    private RateLimitService memoryNode(long maxLive, MeterRegistry meterRegistry) {
+        RateLimitService node = new RateLimitService(
+                new DefaultListableBeanFactory().getBeanProvider(JdbcBucketProxyManager.class),
+                meterRegistry, environment, true, 0.05, 100, 5, 10_000, maxLive, 60, 200_000);
+        nodes.add(node);
+        return node;
+    }
+
+    private RateLimitService jdbcNode() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("jdbcBucketProxyManager",
+                new JdbcBucketProxyManager(new JdbcTemplate(dataSource)));
+        RateLimitService node = new RateLimitService(beanFactory.getBeanProvider(JdbcBucketProxyManager.class),
+                new SimpleMeterRegistry(), environment, true, 0.05, 100, 5, 10_000, 50_000, 60, 200_000);
+        nodes.add(node);
+        return node;
+    }
+}
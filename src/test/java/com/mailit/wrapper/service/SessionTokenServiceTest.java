@@ -0,0 +1,42 @@
+package com.mailit.wrapper.service;
+
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.RateLimitPlan;
+import com.mailit.wrapper.repository.ClientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SessionTokenServiceTest {
+
+    private final TimeZone defaultZone = TimeZone.getDefault();
+
+    @AfterEach
+    void restoreZone() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    void tokenNeverOutlivesItsKeyOnAHostEastOfUtc() {
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        SessionTokenService service = new SessionTokenService(mock(ClientRepository.class), "", 900, 30);
+        service.onEpochChanged(9L, 0);
+
+        LocalDateTime keyExpiry = LocalDateTime.now().plusMinutes(5);
+        AuthenticatedClient client = new AuthenticatedClient(9L, "expiring", "sk_live_expiring",
+                RateLimitPlan.FREE, keyExpiry);
+
+        Instant tokenExpiry = service.issue(client).expiresAt();
+
+        assertThat(Duration.between(Instant.now(), tokenExpiry))
+                .isLessThanOrEqualTo(Duration.ofMinutes(5))
+                .isGreaterThan(Duration.ofMinutes(4));
+    }
+}
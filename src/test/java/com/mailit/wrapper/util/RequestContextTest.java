@@ -0,0 +1,86 @@
+package com.mailit.wrapper.util;
+
+import com.mailit.wrapper.model.AuthenticatedClient;
+import com.mailit.wrapper.model.RateLimitPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestContextTest {
+
+    private static final AuthenticatedClient CLIENT =
+            new AuthenticatedClient(3L, "context", "sk_test_ctx", RateLimitPlan.STARTER, null);
+
+    @AfterEach
+    void clear() {
+        RequestContext.clear();
+        MDC.clear();
+    }
+
+    @Test
+    void callerRunsTaskLeavesTheCallersContextInPlace() throws Exception {
+        // One busy thread and a full queue, so further tasks run on this thread
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.CallerRunsPolicy());
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> awaitQuietly(release));
+        executor.execute(() -> { });
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        RequestContext.setClient(CLIENT);
+        RequestContext.setDeadline(deadline);
+        MDC.put("correlationId", "corr-1");
+
+        List<String> seen = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            executor.execute(RequestContext.propagate(() -> seen.add(Thread.currentThread().getName() + ":"
+                    + RequestContext.client().id() + ":" + MDC.get("correlationId"))));
+        }
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        String caller = Thread.currentThread().getName();
+        assertThat(seen).containsExactly(caller + ":3:corr-1", caller + ":3:corr-1", caller + ":3:corr-1");
+        assertThat(RequestContext.client()).isSameAs(CLIENT);
+        assertThat(RequestContext.deadline()).isEqualTo(deadline);
+        assertThat(MDC.get("correlationId")).isEqualTo("corr-1");
+    }
+
+    @Test
+    void pooledThreadIsLeftWithoutContextAfterTheTask() throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(4));
+        RequestContext.setClient(CLIENT);
+        RequestContext.setDeadline(System.nanoTime());
+        MDC.put("correlationId", "corr-2");
+        executor.execute(RequestContext.propagate(() -> { }));
+
+        List<Object> leftOver = new ArrayList<>();
+        executor.submit(() -> {
+            leftOver.add(RequestContext.client());
+            leftOver.add(RequestContext.deadline());
+            leftOver.add(MDC.get("correlationId"));
+        }).get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertThat(leftOver).containsOnlyNulls();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}